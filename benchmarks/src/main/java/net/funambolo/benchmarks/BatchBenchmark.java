@@ -0,0 +1,82 @@
+package net.funambolo.benchmarks;
+
+import net.funambolo.BatchValidator;
+import net.funambolo.ValidationMode;
+import net.funambolo.ValidationResult;
+import net.funambolo.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to validate a whole import, sequentially and with a BatchValidator using a given number of
+ * threads, to check how the batch validation scales with the cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private List<Map<String, String>> records;
+    private Validator validator;
+    private ForkJoinPool pool;
+    private BatchValidator batch;
+
+    @Setup
+    public void setUp() {
+        Forms form = new Forms(12, Forms.MIX_MIXED, 0);
+        validator = Validator.compile(form.rules);
+        records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            records.add(new HashMap<String, String>(form.values));
+        }
+        pool = new ForkJoinPool(threads);
+        batch = new BatchValidator(validator, pool, ValidationMode.COLLECT_ALL);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int sequential() {
+        int good = 0;
+        for (Map<String, String> record : records) {
+            if (validator.validate(record).isGood()) {
+                good++;
+            }
+        }
+        return good;
+    }
+
+    @Benchmark
+    public List<ValidationResult> batch() {
+        return batch.validate(records);
+    }
+}
@@ -0,0 +1,25 @@
+package net.funambolo.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, so that every result reports the allocation rate
+ * (gc.alloc.rate.norm, bytes/op) next to the throughput.
+ * It accepts the same arguments of the standard JMH launcher, ex:
+ * java -jar target/benchmarks.jar ValidationBenchmark -p fields=50 -rf json -rff results.json
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
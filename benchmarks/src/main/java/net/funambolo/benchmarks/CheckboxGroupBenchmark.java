@@ -0,0 +1,70 @@
+package net.funambolo.benchmarks;
+
+import net.funambolo.ValidationResult;
+import net.funambolo.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a group of checkboxes back from a validated form: substring scan against the prefix index.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckboxGroupBenchmark {
+
+    @Param({"10", "400"})
+    public int checkboxes;
+
+    private ValidationResult result;
+
+    @Setup
+    public void setUp() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < checkboxes; i++) {
+            String field = String.format("checkbox%03d", i);
+            rules.put(field, "checkbox|integer");
+            values.put(field, i % 3 == 0 ? "1" : null);
+        }
+        for (int i = 0; i < 50; i++) {
+            rules.put("text" + i, "alphanumerical|maxlen,100");
+            values.put("text" + i, "Some text " + i);
+        }
+        result = Validator.compile(rules).validate(values);
+        if (!result.isGood()) {
+            throw new IllegalStateException(result.getAllErrors());
+        }
+    }
+
+    @Benchmark
+    public void pattern(Blackhole blackhole) {
+        for (Map.Entry<String, String> entry : result.getCleanValuesWithPattern("checkbox").entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void prefix(Blackhole blackhole) {
+        for (Map.Entry<String, String> entry : result.getCleanValuesWithPrefix("checkbox").entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.funambolo.benchmarks;
+
+import net.funambolo.ColumnValidator;
+import net.funambolo.Validator;
+import net.funambolo.WashingMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A column of 100000 values checked against one rule: a WashingMachine for each row, a shared
+ * Validator for each row and a ColumnValidator for the whole column. One value in a hundred is not good.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnBenchmark {
+    private static final int ROWS = 100000;
+    private static final String FIELD = "field";
+
+    @Param({"required|integer|maxlen,10", "onlynumeric|maxlen,12", "required|alphanumerical|maxlen,20"})
+    public String rule;
+
+    private String[] column;
+    private HashMap<String, String> rules;
+    private Validator validator;
+    private ColumnValidator columnValidator;
+
+    @Setup
+    public void setUp() {
+        rules = new HashMap<String, String>();
+        rules.put(FIELD, rule);
+        validator = Validator.compile(rules);
+        columnValidator = new ColumnValidator(validator, FIELD);
+        Random random = new Random(1);
+        column = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            String value = String.format("%09d", random.nextInt(1000000000));
+            if (rule.contains("alphanumerical")) {
+                value = "Via Roma " + value.substring(0, 3);
+            } else if (rule.contains("onlynumeric")) {
+                value = value.substring(0, 4) + "," + value.substring(4, 6);
+            }
+            column[i] = random.nextInt(100) == 0 ? value + "<" : value;
+        }
+        if (columnValidator.validate(column).cardinality() == 0) {
+            throw new IllegalStateException("The benchmark column has no bad value");
+        }
+    }
+
+    @Benchmark
+    public int washingMachinePerRow() {
+        int failures = 0;
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (String value : column) {
+            values.put(FIELD, value);
+            WashingMachine wm = new WashingMachine();
+            wm.setValues(values);
+            wm.setRules(rules);
+            if (!wm.isGood()) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public int validatorPerRow() {
+        int failures = 0;
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (String value : column) {
+            values.put(FIELD, value);
+            if (!validator.validate(values).isGood()) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    @Benchmark
+    public BitSet column() {
+        return columnValidator.validate(column);
+    }
+}
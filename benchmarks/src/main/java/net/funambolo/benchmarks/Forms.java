@@ -0,0 +1,82 @@
+package net.funambolo.benchmarks;
+
+import java.util.HashMap;
+
+/**
+ * Builds realistic forms for the benchmarks: a number of fields following one of the rule mixes
+ * plus a textarea whose size is chosen by the benchmark.
+ */
+final class Forms {
+
+    static final String TEXTAREA = "notes";
+
+    /**
+     * The rule mixes used by the benchmarks
+     */
+    static final String MIX_LENGTH = "length";
+    static final String MIX_DATES = "dates";
+    static final String MIX_NUMERICS = "numerics";
+    static final String MIX_TEXT = "text";
+    static final String MIX_MIXED = "mixed";
+
+    private static final String[] MIXED = {MIX_LENGTH, MIX_DATES, MIX_NUMERICS, MIX_TEXT};
+
+    final HashMap<String, String> rules = new HashMap<String, String>();
+    final HashMap<String, String> values = new HashMap<String, String>();
+
+    Forms(int fields, String mix, int textareaSize) {
+        for (int i = 0; i < fields; i++) {
+            String name = "field" + i;
+            String fieldMix = MIX_MIXED.equals(mix) ? MIXED[i % MIXED.length] : mix;
+            switch (fieldMix) {
+                case MIX_LENGTH:
+                    rules.put(name, "required|minlen,2|maxlen,250");
+                    values.put(name, "value number " + i);
+                    break;
+                case MIX_DATES:
+                    if (i % 3 == 0) {
+                        rules.put(name, "required|calendardate");
+                        values.put(name, "22/05/2017");
+                    } else if (i % 3 == 1) {
+                        rules.put(name, "required|mysqldate");
+                        values.put(name, "2017-05-22");
+                    } else {
+                        rules.put(name, "time");
+                        values.put(name, "12:45");
+                    }
+                    break;
+                case MIX_NUMERICS:
+                    if (i % 2 == 0) {
+                        rules.put(name, "required|integer|minnumeric,1|maxnumeric,100000");
+                        values.put(name, String.valueOf(1 + i * 7));
+                    } else {
+                        rules.put(name, "onlynumeric|maxlen,20");
+                        values.put(name, "1.234,56");
+                    }
+                    break;
+                case MIX_TEXT:
+                    rules.put(name, "required|alphanumerical|maxlen,250");
+                    values.put(name, "Hello, this is the text of field " + i + " (èàòù)!");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown rule mix " + mix);
+            }
+        }
+        if (textareaSize > 0) {
+            rules.put(TEXTAREA, "alphanumerical|maxlen," + textareaSize);
+            values.put(TEXTAREA, text(textareaSize));
+        }
+    }
+
+    /**
+     * Plain text of the given size, as it would be written in a textarea
+     */
+    static String text(int size) {
+        String sentence = "The quick brown fox jumps over the lazy dog, again and again.\n";
+        StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            sb.append(sentence, 0, Math.min(sentence.length(), size - sb.length()));
+        }
+        return sb.toString();
+    }
+}
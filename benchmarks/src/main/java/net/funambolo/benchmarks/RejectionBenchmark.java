@@ -0,0 +1,56 @@
+package net.funambolo.benchmarks;
+
+import net.funambolo.ValidationMode;
+import net.funambolo.ValidationResult;
+import net.funambolo.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rejecting junk input, as sent by a bot: every field of the form is not good.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RejectionBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int fields;
+
+    @Param({"COLLECT_ALL", "FAIL_FAST"})
+    public ValidationMode mode;
+
+    private HashMap<String, String> values;
+    private Validator validator;
+
+    @Setup
+    public void setUp() {
+        Forms form = new Forms(fields, Forms.MIX_MIXED, 0);
+        validator = Validator.compile(form.rules);
+        values = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : form.values.entrySet()) {
+            values.put(entry.getKey(), "<a href=\"http://spam.example\">cheap</a> #" + entry.getKey());
+        }
+    }
+
+    @Benchmark
+    public ValidationResult junk() {
+        return validator.validate(values, mode);
+    }
+}
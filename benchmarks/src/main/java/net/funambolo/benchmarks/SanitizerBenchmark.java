@@ -0,0 +1,80 @@
+package net.funambolo.benchmarks;
+
+import net.funambolo.XssSanitizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the XSS sanitizer on clean and on adversarial values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SanitizerBenchmark {
+
+    /**
+     * - clean          plain text, nothing to remove
+     * - script         text with a script block in the middle
+     * - onload         many onload keywords and no '=', each one rescans the rest of the value
+     * - eval           many eval( and no ')'
+     * - nested         script tags split by other script tags
+     */
+    @Param({"clean", "script", "onload", "eval", "nested"})
+    public String input;
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    private String value;
+
+    @Setup
+    public void setUp() {
+        switch (input) {
+            case "clean":
+                value = Forms.text(size);
+                break;
+            case "script":
+                String half = Forms.text(size / 2);
+                value = half + "<script>alert('hello')</script>" + half;
+                break;
+            case "onload":
+                value = repeat("onload ", size);
+                break;
+            case "eval":
+                value = repeat("eval(", size);
+                break;
+            case "nested":
+                value = repeat("<scr<script>ipt>", size);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown input " + input);
+        }
+    }
+
+    private static String repeat(String piece, int size) {
+        StringBuilder sb = new StringBuilder(size + piece.length());
+        while (sb.length() < size) {
+            sb.append(piece);
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String strip() {
+        return XssSanitizer.strip(value);
+    }
+}
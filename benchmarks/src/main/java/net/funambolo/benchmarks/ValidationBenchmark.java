@@ -0,0 +1,126 @@
+package net.funambolo.benchmarks;
+
+import net.funambolo.ParameterSource;
+import net.funambolo.ValidationMetrics;
+import net.funambolo.ValidationMode;
+import net.funambolo.ValidationResult;
+import net.funambolo.Validator;
+import net.funambolo.VerdictCache;
+import net.funambolo.WashingMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a whole form validation, both as it is done with a WashingMachine per request
+ * and with a Validator shared by all the requests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int fields;
+
+    @Param({Forms.MIX_LENGTH, Forms.MIX_DATES, Forms.MIX_NUMERICS, Forms.MIX_TEXT, Forms.MIX_MIXED})
+    public String mix;
+
+    /**
+     * Size of the textarea of the form, 0 for a form without textarea
+     */
+    @Param({"0", "16", "4096", "1048576"})
+    public int textareaSize;
+
+    private HashMap<String, String> rules;
+    private HashMap<String, String> values;
+    private Validator validator;
+    private Validator validatorWithMetrics;
+    private Validator validatorWithVerdictCache;
+    private String[] valuesByOrdinal;
+    private Map<String, String[]> parameterMap;
+
+    @Setup
+    public void setUp() {
+        Forms form = new Forms(fields, mix, textareaSize);
+        rules = form.rules;
+        values = form.values;
+        validator = Validator.compile(rules);
+        validatorWithMetrics = validator.withMetrics(new ValidationMetrics());
+        validatorWithVerdictCache = validator.withVerdictCache(new VerdictCache(100000, VerdictCache.DEFAULT_MAX_VALUE_LENGTH));
+        valuesByOrdinal = new String[validator.getRuleSet().size()];
+        for (int i = 0; i < valuesByOrdinal.length; i++) {
+            valuesByOrdinal[i] = values.get(validator.getRuleSet().fieldAt(i));
+        }
+        parameterMap = new HashMap<String, String[]>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            parameterMap.put(entry.getKey(), new String[]{entry.getValue()});
+        }
+        if (!validator.validate(values).isGood()) {
+            throw new IllegalStateException("The benchmark form is not valid");
+        }
+    }
+
+    @Benchmark
+    public boolean washingMachinePerRequest() {
+        WashingMachine wm = new WashingMachine();
+        wm.setValues(values);
+        wm.setRules(rules);
+        return wm.isGood();
+    }
+
+    @Benchmark
+    public ValidationResult sharedValidator() {
+        return validator.validate(values);
+    }
+
+    @Benchmark
+    public ValidationResult sharedValidatorWithMetrics() {
+        return validatorWithMetrics.validate(values);
+    }
+
+    /**
+     * Every request sends the same values, so every short value is a hit
+     */
+    @Benchmark
+    public ValidationResult sharedValidatorWithVerdictCache() {
+        return validatorWithVerdictCache.validate(values);
+    }
+
+    @Benchmark
+    public ValidationResult sharedValidatorByOrdinal() {
+        return validator.validate(valuesByOrdinal, ValidationMode.COLLECT_ALL);
+    }
+
+    /**
+     * A servlet parameter map copied into a HashMap, as callers of setValues have to do
+     */
+    @Benchmark
+    public ValidationResult servletParametersCopied() {
+        HashMap<String, String> copy = new HashMap<String, String>();
+        for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return validator.validate(copy);
+    }
+
+    @Benchmark
+    public ValidationResult servletParametersInPlace() {
+        return validator.validate(ParameterSource.of(parameterMap), ValidationMode.COLLECT_ALL);
+    }
+}
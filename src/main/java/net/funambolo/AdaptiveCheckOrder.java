@@ -0,0 +1,98 @@
+package net.funambolo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The order of the checks of a CompiledRule learned from the values it receives.
+ *
+ * It starts from the cost order of the rule and counts how many values every check rejects. Every
+ * PERIOD values the checks are sorted again by cost divided by rejection rate, so a check that
+ * rejects many values for a small cost moves to the front: with "alphanumerical|maxlen,10" and a form
+ * where most bad values are too long, maxlen runs first even if the cost estimates were wrong.
+ *
+ * The counters are LongAdders shared by all the threads using the Validator, so counting a value does
+ * not make the threads wait for each other. They are summed only for one value in CHECK_EVERY, picked
+ * at random so nothing is kept for each thread, and the checks are sorted again when the sum has
+ * reached PERIOD. The counters are only an estimate: a value checked during a reorder can be counted
+ * in the wrong period. The error reported does not depend on the order, see CompiledRule.firstFailure.
+ */
+final class AdaptiveCheckOrder {
+    static final int PERIOD = 1 << 14;
+    // on average, how many values are checked between two sums of the calls
+    private static final int CHECK_EVERY = 1 << 10;
+
+    // a check that rejected nothing in a period is not assumed to never reject
+    private static final double MIN_REJECTION_RATE = 1.0 / PERIOD;
+
+    private final CompiledRule rule;
+    private volatile CompiledRule.Check[] order;
+    private final LongAdder calls = new LongAdder();
+    // by Check ordinal, values rejected in the current period
+    private final LongAdder[] rejections = new LongAdder[CompiledRule.Check.values().length];
+
+    AdaptiveCheckOrder(CompiledRule rule) {
+        this.rule = rule;
+        this.order = rule.getCostOrder();
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new LongAdder();
+        }
+    }
+
+    CompiledRule.Check[] getOrder() {
+        return order;
+    }
+
+    /**
+     * Same contract of CompiledRule.check
+     */
+    ErrorCode check(String value) {
+        CompiledRule.Check[] current = order;
+        ErrorCode code = null;
+        for (CompiledRule.Check c : current) {
+            code = rule.fails(c, value);
+            if (code != null) {
+                rejections[c.ordinal()].increment();
+                code = rule.firstFailure(value, c, code);
+                break;
+            }
+        }
+        calls.increment();
+        if (ThreadLocalRandom.current().nextInt(CHECK_EVERY) == 0 && calls.sum() >= PERIOD) {
+            reorder(current);
+        }
+        return code;
+    }
+
+    /**
+     * A check is reached by the values not rejected by the checks before it, its rejection rate is
+     * measured on them
+     */
+    private synchronized void reorder(CompiledRule.Check[] current) {
+        long reached = calls.sum();
+        if (reached < PERIOD || current != order) {
+            // another thread has just sorted the checks
+            return;
+        }
+        // the values counted while summing stay for the next period
+        calls.add(-reached);
+        final double[] score = new double[CompiledRule.Check.values().length];
+        for (CompiledRule.Check c : current) {
+            long rejected = rejections[c.ordinal()].sum();
+            rejections[c.ordinal()].add(-rejected);
+            double rate = reached > 0 ? (double) rejected / reached : 0;
+            score[c.ordinal()] = c.cost / Math.max(rate, MIN_REJECTION_RATE);
+            reached -= rejected;
+        }
+        CompiledRule.Check[] next = current.clone();
+        Arrays.sort(next, new Comparator<CompiledRule.Check>() {
+            @Override
+            public int compare(CompiledRule.Check a, CompiledRule.Check b) {
+                return Double.compare(score[a.ordinal()], score[b.ordinal()]);
+            }
+        });
+        order = next;
+    }
+}
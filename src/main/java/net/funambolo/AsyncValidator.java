@@ -0,0 +1,235 @@
+package net.funambolo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A Validator followed by the custom rules of some of its fields, see CustomRule. Immutable and
+ * thread-safe as the Validator itself.
+ *
+ * The rules of the Validator run first, then every custom rule runs on the clean values of its field
+ * when the field is good and not empty. All the custom rules are started together and their lookups
+ * are coalesced: every LookupResolver is called once with the distinct values of all the fields, and
+ * with validateAll of all the records, so the latency of a validation is one round trip to each
+ * resolver instead of one per field.
+ *
+ * Example of usage
+ * private static final AsyncValidator SIGN_UP = new AsyncValidator(Validator.compile(rules))
+ *         .withRule("username", CustomRule.mustNotExist("is already taken", usernames))
+ *         .withRule("country", CustomRule.mustExist("is not a known country", countries));
+ * ...
+ * SIGN_UP.validate(values).thenAccept(result -> ...);
+ *
+ * When a check or a lookup fails the returned future completes exceptionally with its exception.
+ */
+public final class AsyncValidator {
+    private final Validator validator;
+    // by ordinal, null for the fields with no custom rule
+    private final CustomRule[] customRules;
+
+    public AsyncValidator(Validator validator) {
+        this(validator, new CustomRule[validator.getRuleSet().size()]);
+    }
+
+    private AsyncValidator(Validator validator, CustomRule[] customRules) {
+        this.validator = validator;
+        this.customRules = customRules;
+    }
+
+    public Validator getValidator() {
+        return validator;
+    }
+
+    /**
+     * @param field a field of the rule set of the Validator
+     * @param rule the custom rule of the field, it replaces the previous one
+     * @return an AsyncValidator with the same rules and the custom rule of the field
+     */
+    public AsyncValidator withRule(String field, CustomRule rule) {
+        int ordinal = validator.getRuleSet().ordinalOf(field);
+        if (ordinal < 0 || rule == null) {
+            throw new IllegalArgumentException("The field " + field + " has no rule or the custom rule is null");
+        }
+        CustomRule[] copy = Arrays.copyOf(customRules, customRules.length);
+        copy[ordinal] = rule;
+        return new AsyncValidator(validator, copy);
+    }
+
+    public CompletableFuture<ValidationResult> validate(Map<String, String> values) {
+        return validate(values, ValidationMode.COLLECT_ALL);
+    }
+
+    /**
+     * With ValidationMode.FAIL_FAST the custom rules do not run when the rules of the Validator already
+     * found a field that is not good
+     */
+    public CompletableFuture<ValidationResult> validate(Map<String, String> values, ValidationMode mode) {
+        ValidationResult result = validator.validate(values, mode);
+        if (mode == ValidationMode.FAIL_FAST && !result.isGood()) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return check(result);
+    }
+
+    /**
+     * @param records the records to validate, field name -> value
+     * @return the result of every record, in the same order of the records, with one lookup for each resolver
+     */
+    public CompletableFuture<List<ValidationResult>> validateAll(List<? extends Map<String, String>> records) {
+        List<ValidationResult> results = new ArrayList<>(records.size());
+        for (Map<String, String> record : records) {
+            results.add(validator.validate(record));
+        }
+        return checkAll(results);
+    }
+
+    /**
+     * Run the custom rules on a result given by the Validator, ex: a result of validate(ParameterSource, mode)
+     *
+     * @return a future completed with the same result once the custom rules have rejected their fields
+     */
+    public CompletableFuture<ValidationResult> check(final ValidationResult result) {
+        return checkAll(Collections.singletonList(result)).thenApply(new Function<List<ValidationResult>, ValidationResult>() {
+            @Override
+            public ValidationResult apply(List<ValidationResult> results) {
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Run the custom rules on many results given by the Validator, every LookupResolver is called once
+     *
+     * @return a future completed with the same results once the custom rules have rejected their fields
+     */
+    public CompletableFuture<List<ValidationResult>> checkAll(final List<ValidationResult> results) {
+        final List<Pending> pending = new ArrayList<>();
+        // resolver -> distinct values to look up, in the order they are met
+        Map<LookupResolver, Set<String>> keys = new IdentityHashMap<>();
+        for (ValidationResult result : results) {
+            if (result.getRuleSet() != validator.getRuleSet()) {
+                throw new IllegalArgumentException("The result has not been given by the Validator of this AsyncValidator");
+            }
+            for (int ordinal = 0; ordinal < customRules.length; ordinal++) {
+                CustomRule rule = customRules[ordinal];
+                if (rule == null || result.isRejected(ordinal)) {
+                    continue;
+                }
+                String[] all = result.allCleanValuesAt(ordinal);
+                for (String value : all != null ? all : new String[]{result.getCleanValue(ordinal)}) {
+                    if (value == null || value.isEmpty()) {
+                        continue;
+                    }
+                    if (rule instanceof CustomRule.Lookup) {
+                        LookupResolver resolver = ((CustomRule.Lookup) rule).getResolver();
+                        Set<String> set = keys.get(resolver);
+                        if (set == null) {
+                            set = new LinkedHashSet<>();
+                            keys.put(resolver, set);
+                        }
+                        set.add(value);
+                        pending.add(new Pending(result, ordinal, value, null));
+                    } else {
+                        pending.add(new Pending(result, ordinal, value, start(rule, value)));
+                    }
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+        }
+
+        final Map<LookupResolver, CompletableFuture<Set<String>>> lookups = new IdentityHashMap<>();
+        List<CompletableFuture<?>> all = new ArrayList<>(keys.size() + pending.size());
+        for (Map.Entry<LookupResolver, Set<String>> entry : keys.entrySet()) {
+            CompletableFuture<Set<String>> lookup = lookup(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+            lookups.put(entry.getKey(), lookup);
+            all.add(lookup);
+        }
+        for (Pending p : pending) {
+            if (p.verdict != null) {
+                all.add(p.verdict);
+            }
+        }
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[all.size()])).thenApply(new Function<Void, List<ValidationResult>>() {
+            @Override
+            public List<ValidationResult> apply(Void nothing) {
+                for (Pending p : pending) {
+                    CustomRule rule = customRules[p.ordinal];
+                    boolean good = p.verdict != null
+                            ? Boolean.TRUE.equals(p.verdict.join())
+                            : ((CustomRule.Lookup) rule).accepts(lookups.get(((CustomRule.Lookup) rule).getResolver()).join(), p.value);
+                    // a field with many values is rejected once
+                    if (!good && !p.result.isRejected(p.ordinal)) {
+                        String field = validator.getRuleSet().fieldAt(p.ordinal);
+                        validator.rejectAfterCall(p.result, p.ordinal, new ValidationError(field, ErrorCode.CUSTOM, rule.getMessage(), p.value.length()));
+                    }
+                }
+                return results;
+            }
+        });
+    }
+
+    /**
+     * A check throwing instead of giving back a future fails the future, as a lookup does
+     */
+    private static CompletableFuture<Boolean> start(CustomRule rule, String value) {
+        try {
+            return rule.test(value);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    private static CompletableFuture<Set<String>> lookup(final LookupResolver resolver, Set<String> keys) {
+        CompletableFuture<Set<String>> found;
+        try {
+            found = resolver.findExisting(keys);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+        if (found == null) {
+            return failed(CustomRule.Lookup.nullAnswer(resolver));
+        }
+        return found.thenApply(new Function<Set<String>, Set<String>>() {
+            @Override
+            public Set<String> apply(Set<String> existing) {
+                if (existing == null) {
+                    throw CustomRule.Lookup.nullAnswer(resolver);
+                }
+                return existing;
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * A value waiting for its custom rule, verdict is null for the values looked up in batch
+     */
+    private static final class Pending {
+        final ValidationResult result;
+        final int ordinal;
+        final String value;
+        final CompletableFuture<Boolean> verdict;
+
+        Pending(ValidationResult result, int ordinal, String value, CompletableFuture<Boolean> verdict) {
+            this.result = result;
+            this.ordinal = ordinal;
+            this.value = value;
+            this.verdict = verdict;
+        }
+    }
+}
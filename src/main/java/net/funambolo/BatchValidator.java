@@ -0,0 +1,128 @@
+package net.funambolo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Validates many records with the same rules using all the cores, for example the rows of a CSV or
+ * spreadsheet import.
+ *
+ * The rules are compiled once in the Validator and shared by all the workers, each record gets its own
+ * ValidationResult. The results are given back in the same order of the records.
+ *
+ * Example of usage
+ * BatchValidator batch = new BatchValidator(Validator.compile(rules));
+ * List<ValidationResult> results = batch.validate(rows);
+ */
+public final class BatchValidator {
+
+    /**
+     * Number of records read from an iterator before they are validated in parallel
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    // a task validates sequentially at most this many records
+    private static final int MAX_LEAF_SIZE = 1024;
+
+    private final Validator validator;
+    private final ForkJoinPool pool;
+    private final ValidationMode mode;
+
+    public BatchValidator(Validator validator) {
+        this(validator, ForkJoinPool.commonPool(), ValidationMode.COLLECT_ALL);
+    }
+
+    public BatchValidator(Validator validator, ForkJoinPool pool, ValidationMode mode) {
+        if (validator == null || pool == null || mode == null) {
+            throw new IllegalArgumentException("The validator, the pool and the mode can not be null");
+        }
+        this.validator = validator;
+        this.pool = pool;
+        this.mode = mode;
+    }
+
+    /**
+     * @param records the records to validate, field name -> value
+     * @return the result of every record, in the same order of the records
+     */
+    public List<ValidationResult> validate(List<? extends Map<String, String>> records) {
+        // records are read by index by many workers, a copy makes every read cheap and stable
+        return Arrays.asList(validateAll(new ArrayList<Map<String, String>>(records)));
+    }
+
+    /**
+     * The records are read in chunks of chunkSize, each chunk is validated in parallel
+     *
+     * @param records the records to validate, field name -> value
+     * @param chunkSize how many records are read before validating them
+     * @return the result of every record, in the same order of the records
+     */
+    public List<ValidationResult> validate(Iterator<? extends Map<String, String>> records, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive");
+        }
+        List<ValidationResult> out = new ArrayList<>();
+        List<Map<String, String>> chunk = new ArrayList<>(chunkSize);
+        while (records.hasNext()) {
+            while (chunk.size() < chunkSize && records.hasNext()) {
+                chunk.add(records.next());
+            }
+            Collections.addAll(out, validateAll(chunk));
+            chunk.clear();
+        }
+        return out;
+    }
+
+    public List<ValidationResult> validate(Iterator<? extends Map<String, String>> records) {
+        return validate(records, DEFAULT_CHUNK_SIZE);
+    }
+
+    private ValidationResult[] validateAll(List<Map<String, String>> records) {
+        int size = records.size();
+        ValidationResult[] results = new ValidationResult[size];
+        if (size == 0) {
+            return results;
+        }
+        // enough tasks to keep every worker busy even when some records are slower than others
+        int leafSize = Math.max(1, Math.min(MAX_LEAF_SIZE, size / (pool.getParallelism() * 8)));
+        pool.invoke(new Chunk(records, results, 0, size, leafSize));
+        return results;
+    }
+
+    private final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Map<String, String>> records;
+        private final ValidationResult[] results;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        Chunk(List<Map<String, String>> records, ValidationResult[] results, int from, int to, int leafSize) {
+            this.records = records;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                for (int i = from; i < to; i++) {
+                    results[i] = validator.validate(records.get(i), mode);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Chunk(records, results, from, middle, leafSize),
+                    new Chunk(records, results, middle, to, leafSize));
+        }
+    }
+}
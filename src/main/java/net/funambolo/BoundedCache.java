@@ -0,0 +1,112 @@
+package net.funambolo;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent map with a maximum size, evicting with the CLOCK algorithm, an approximation of LRU.
+ *
+ * A hit only marks its entry as referenced, so reads never take a lock nor contend on a shared
+ * counter. When an insertion goes beyond the maximum size, a hand sweeps the entries: a referenced
+ * entry gets a second chance and is unmarked, the first entry found not referenced is evicted.
+ */
+final class BoundedCache<K, V> {
+    private final int maxSize;
+    private final ConcurrentHashMap<K, Node<V>> map;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // the hand of the clock, used only while holding the lock of this cache
+    private Iterator<Map.Entry<K, Node<V>>> hand;
+
+    private static final class Node<V> {
+        final V value;
+        volatile boolean referenced;
+
+        Node(V value) {
+            this.value = value;
+        }
+    }
+
+    BoundedCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size of the cache must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.map = new ConcurrentHashMap<>(Math.min(maxSize, 1024) * 2);
+    }
+
+    /**
+     * @return the cached value, null if it is not in the cache
+     */
+    V get(Object key) {
+        Node<V> node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.value;
+    }
+
+    /**
+     * @return the value in the cache for the key: value, or the one put by another thread in the meantime
+     */
+    V put(K key, V value) {
+        Node<V> existing = map.putIfAbsent(key, new Node<>(value));
+        if (existing != null) {
+            return existing.value;
+        }
+        if (map.size() > maxSize) {
+            evict();
+        }
+        return value;
+    }
+
+    private synchronized void evict() {
+        while (map.size() > maxSize) {
+            if (hand == null || !hand.hasNext()) {
+                hand = map.entrySet().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            Map.Entry<K, Node<V>> entry = hand.next();
+            if (entry.getValue().referenced) {
+                entry.getValue().referenced = false;
+            } else if (map.remove(entry.getKey(), entry.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    void clear() {
+        map.clear();
+    }
+}
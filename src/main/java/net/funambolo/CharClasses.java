@@ -0,0 +1,159 @@
+package net.funambolo;
+
+/**
+ * Hand written scanners for the character classes used by the rules, they accept exactly what the
+ * regular expressions used by the first versions of WashingMachine accepted:
+ *
+ * - integer          (?=.*[^ ])[0-9]+
+ * - onlynumeric      (?=.*[^ ])[0-9\., ]+
+ * - onlyalpha        (?=.*[^ ])[a-zA-ZÀ-ÿ\?;\.!@€£$&\+=*\{\}\[\]\(\)\-_\r\n\t\/,: ]+
+ * - alphanumerical   ^[a-zA-ZÀ-ÿ0-9\?;\.!@€£$&\+=*\{\}\[\]\(\)\-_\r\n\t\/,: ]*$
+ *
+ * The lookahead (?=.*[^ ]) only asks for a character that is not a space, the sets do not contain
+ * other line terminators than \r and \n which are not spaces themselves.
+ *
+ * Every character below 256 is classified by a lookup table, the only character of the sets above
+ * that range is the euro sign.
+ */
+final class CharClasses {
+
+    static final int DIGIT = 1;
+    static final int NUMERIC = 2;
+    static final int ALPHA = 4;
+    static final int ALPHANUMERIC = 8;
+    static final int ALL = DIGIT | NUMERIC | ALPHA | ALPHANUMERIC;
+
+    // flags of summaryOf, next to the classes
+    static final int BLANK = 16;
+    static final int NOT_ONLY_SPACES = 32;
+
+    private static final char EURO = '€';
+    private static final String SYMBOLS = "?;.!@£$&+=*{}[]()-_\r\n\t/,: ";
+
+    private static final byte[] TABLE = new byte[256];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            TABLE[c] |= DIGIT | NUMERIC | ALPHANUMERIC;
+        }
+        TABLE['.'] |= NUMERIC;
+        TABLE[','] |= NUMERIC;
+        TABLE[' '] |= NUMERIC;
+        for (char c = 'a'; c <= 'z'; c++) {
+            TABLE[c] |= ALPHA | ALPHANUMERIC;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            TABLE[c] |= ALPHA | ALPHANUMERIC;
+        }
+        for (char c = 'À'; c <= 'ÿ'; c++) {
+            TABLE[c] |= ALPHA | ALPHANUMERIC;
+        }
+        for (int i = 0; i < SYMBOLS.length(); i++) {
+            TABLE[SYMBOLS.charAt(i)] |= ALPHA | ALPHANUMERIC;
+        }
+    }
+
+    private CharClasses() {
+    }
+
+    /**
+     * @return true if the character belongs to the class, one of DIGIT, NUMERIC, ALPHA, ALPHANUMERIC
+     */
+    static boolean is(char c, int charClass) {
+        if (c < 256) {
+            return (TABLE[c] & charClass) != 0;
+        }
+        return c == EURO && (charClass & (ALPHA | ALPHANUMERIC)) != 0;
+    }
+
+    /**
+     * @return the classes the character belongs to, as a mask of DIGIT, NUMERIC, ALPHA, ALPHANUMERIC
+     */
+    static int classesOf(char c) {
+        if (c < 256) {
+            return TABLE[c];
+        }
+        return c == EURO ? ALPHA | ALPHANUMERIC : 0;
+    }
+
+    /**
+     * @return true if every character belongs to the class, true for the empty string
+     */
+    static boolean allIn(String value, int charClass) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (!is(value.charAt(i), charClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if every character belongs to the class and at least one of them is not a space
+     */
+    private static boolean allInAndNotBlank(String value, int charClass) {
+        boolean blank = true;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (!is(c, charClass)) {
+                return false;
+            }
+            if (c != ' ') {
+                blank = false;
+            }
+        }
+        return !blank;
+    }
+
+    /**
+     * What a check by length and classes needs to know of a value, see CompiledRule.check(length, blank, notOnlySpaces, classes),
+     * with a single lookup for each character
+     *
+     * @param wanted the classes the caller is interested in
+     * @return the classes shared by every character together with BLANK if every character is a space or a
+     * control character and NOT_ONLY_SPACES if at least one is not a space. The scan stops at the first
+     * character missing a wanted class, the flags are then only partial.
+     */
+    static int summaryOf(String value, int wanted) {
+        int classes = ALL;
+        boolean blank = true;
+        boolean notOnlySpaces = false;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            classes &= c < 256 ? TABLE[c] : classesOf(c);
+            blank &= c <= ' ';
+            notOnlySpaces |= c != ' ';
+            if ((classes & wanted) != wanted) {
+                break;
+            }
+        }
+        return classes | (blank ? BLANK : 0) | (notOnlySpaces ? NOT_ONLY_SPACES : 0);
+    }
+
+    static boolean isInteger(String value) {
+        return value.length() > 0 && allIn(value, DIGIT);
+    }
+
+    static boolean isOnlyNumeric(String value) {
+        return allInAndNotBlank(value, NUMERIC);
+    }
+
+    static boolean isOnlyAlpha(String value) {
+        return allInAndNotBlank(value, ALPHA);
+    }
+
+    static boolean isAlphanumeric(String value) {
+        return allIn(value, ALPHANUMERIC);
+    }
+
+    static boolean isBoolean(String value) {
+        return "true".equals(value) || "false".equals(value);
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,146 @@
+package net.funambolo;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Validates a whole column of values against a single rule, for example the postcodes or the
+ * quantities of an import of a million rows, and gives back the values that are not good as a
+ * bitmap: bit i is set when the value at index i is not good.
+ *
+ * Nothing is created for the good values, there is no ValidationResult and no cleaning, the rule is
+ * only checked. Required, maxlen, minlen, exactlen, alphanumerical, onlyalpha, onlynumeric and integer
+ * are all answered by a single scan of the value with one table lookup for each character, see
+ * CharClasses.summaryOf; the other checks run only on the values still good after the scan. A value
+ * is good here exactly when the Validator would accept it, null values are empty, and check gives
+ * back the reason for the values that are not good.
+ *
+ * Example of usage
+ * ColumnValidator quantities = new ColumnValidator("required|integer|maxlen,10");
+ * BitSet failures = quantities.validate(column);
+ * for (int i = failures.nextSetBit(0); i >= 0; i = failures.nextSetBit(i + 1)) {
+ *     report(i, quantities.check(column[i]));
+ * }
+ */
+public final class ColumnValidator {
+    private final CompiledRule rule;
+    private final int maxValueLength;
+    // a longer value is not good whatever its characters are
+    private final int lengthLimit;
+    private final int requiredClasses;
+    // the checks the scan can not answer, in cost order
+    private final CompiledRule.Check[] rest;
+
+    /**
+     * @param rule the rule, see WashingMachine for the rules syntax
+     */
+    public ColumnValidator(String rule) {
+        this(CompiledRule.compile(rule), Validator.NO_LIMIT);
+    }
+
+    /**
+     * The values are checked as the Validator checks the values of the field, with its maximum length of a value
+     */
+    public ColumnValidator(Validator validator, String field) {
+        this(ruleOf(validator, field), validator.getMaxValueLength());
+    }
+
+    private ColumnValidator(CompiledRule rule, int maxValueLength) {
+        this.rule = rule;
+        this.maxValueLength = maxValueLength;
+        int limit = maxValueLength;
+        if (rule == null) {
+            this.requiredClasses = 0;
+            this.rest = new CompiledRule.Check[0];
+        } else {
+            if (rule.lengthLimit() != CompiledRule.NO_BOUND) {
+                limit = Math.min(limit, rule.lengthLimit());
+            }
+            this.requiredClasses = rule.requiredClasses();
+            this.rest = rule.checksNeedingValue();
+        }
+        this.lengthLimit = limit;
+    }
+
+    private static CompiledRule ruleOf(Validator validator, String field) {
+        if (validator == null) {
+            throw new IllegalArgumentException("The validator can not be null");
+        }
+        int ordinal = validator.getRuleSet().ordinalOf(field);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("No check defined for the field " + field);
+        }
+        return validator.getRuleSet().ruleAt(ordinal);
+    }
+
+    /**
+     * @return a bitmap with the bit of every value that is not good set
+     */
+    public BitSet validate(String[] values) {
+        long[] failures = new long[(values.length + 63) >>> 6];
+        for (int i = 0; i < values.length; i++) {
+            if (!isGood(values[i])) {
+                failures[i >>> 6] |= 1L << i;
+            }
+        }
+        return BitSet.valueOf(failures);
+    }
+
+    /**
+     * @return a bitmap with the bit of every value that is not good set
+     */
+    public BitSet validate(List<String> values) {
+        long[] failures = new long[(values.size() + 63) >>> 6];
+        int i = 0;
+        for (String value : values) {
+            if (!isGood(value)) {
+                failures[i >>> 6] |= 1L << i;
+            }
+            i++;
+        }
+        return BitSet.valueOf(failures);
+    }
+
+    /**
+     * @return true if the Validator would accept the value
+     */
+    public boolean isGood(String value) {
+        if (value == null) {
+            value = WashingMachine.EMPTY_STRING;
+        }
+        int length = value.length();
+        if (length > lengthLimit || rule == null) {
+            return false;
+        }
+        int summary = CharClasses.summaryOf(value, requiredClasses);
+        if (rule.check(length, (summary & CharClasses.BLANK) != 0, (summary & CharClasses.NOT_ONLY_SPACES) != 0, summary & CharClasses.ALL) != null) {
+            return false;
+        }
+        for (CompiledRule.Check c : rest) {
+            if (rule.fails(c, value) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return null if the value is good, otherwise the reason the Validator would give for it
+     */
+    public ErrorCode check(String value) {
+        if (value == null) {
+            value = WashingMachine.EMPTY_STRING;
+        }
+        if (value.length() > maxValueLength) {
+            return ErrorCode.TOO_LONG;
+        }
+        if (rule == null) {
+            return ErrorCode.NO_RULE;
+        }
+        return rule.check(value);
+    }
+
+    public CompiledRule getRule() {
+        return rule;
+    }
+}
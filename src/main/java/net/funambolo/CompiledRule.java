@@ -0,0 +1,549 @@
+package net.funambolo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable, pre-parsed form of a single rule string such as "required|alphanumerical|maxlen,250".
+ *
+ * The rule string is parsed once, when the rule is compiled, so that checking a value does not need
+ * to scan the rule text or compile any Pattern. Rule names are recognised with the same substring
+ * semantic used by WashingMachine since its first version, so "requiredinteger" and "required|integer"
+ * are equivalent.
+ */
+public final class CompiledRule {
+
+    /**
+     * The checks a rule can contain, in the order they have always been applied, each with a rough
+     * estimate of its cost: the length checks read one int, the dates and times look at a few
+     * characters, the character classes scan the whole value and the numbers parse it.
+     */
+    enum Check {
+        REQUIRED(2), MAXLEN(1), MINLEN(1), EXACTLEN(1), ALPHANUMERIC(8), ONLYALPHA(8), ONLYNUMERIC(6), INTEGER(5), BOOLEAN(2),
+        MINNUMERIC(10), MAXNUMERIC(10), CALENDARDATE(4), MYSQLDATE(3), TIME(3);
+
+        final int cost;
+
+        Check(int cost) {
+            this.cost = cost;
+        }
+
+        boolean isNumeric() {
+            return this == MINNUMERIC || this == MAXNUMERIC;
+        }
+
+        /**
+         * @return true if the check is answered by the length and the classes of the characters of a value
+         */
+        boolean isBySummary() {
+            return compareTo(INTEGER) <= 0;
+        }
+    }
+
+    static final int NO_BOUND = -1;
+
+    /**
+     * A typed value that is not available, numbers are kept in the range -(2^63 - 1) .. 2^63 - 1
+     */
+    static final long NO_VALUE = Long.MIN_VALUE;
+
+    private final String source;
+    private final boolean required;
+    private final boolean checkbox;
+    private final boolean numericDefault;
+    private final int maxLen;
+    private final int minLen;
+    private final int exactLen;
+    // null when the rule has no such bound
+    private final Decimal minNumeric;
+    private final Decimal maxNumeric;
+    private final Check[] checks;
+    // the same checks from the cheapest, minnumeric and maxnumeric are a single step
+    private final Check[] costOrder;
+    private final ValueType type;
+
+    // the bounds as they are shown in the error messages
+    private final String maxLenText;
+    private final String minLenText;
+    private final String exactLenText;
+    private final String minNumericText;
+    private final String maxNumericText;
+
+    private CompiledRule(String source) {
+        this.source = source;
+        this.required = source.contains(WashingMachine.RULE_REQUIRED);
+        this.checkbox = source.contains(WashingMachine.RULE_CHECKBOX);
+        this.numericDefault = source.contains(WashingMachine.RULE_INTEGER) || source.contains(WashingMachine.RULE_ONLYNUMERIC);
+
+        this.maxLen = parseBound(source, WashingMachine.RULE_MAXLEN);
+        this.minLen = parseBound(source, WashingMachine.RULE_MINLEN);
+        this.exactLen = parseBound(source, WashingMachine.RULE_EXACTLEN);
+        this.minNumeric = parseDecimalBound(source, WashingMachine.RULE_MINNUMERIC);
+        this.maxNumeric = parseDecimalBound(source, WashingMachine.RULE_MAXNUMERIC);
+
+        List<Check> list = new ArrayList<>();
+        if (required) list.add(Check.REQUIRED);
+        if (maxLen != NO_BOUND) list.add(Check.MAXLEN);
+        if (minLen != NO_BOUND) list.add(Check.MINLEN);
+        if (exactLen != NO_BOUND) list.add(Check.EXACTLEN);
+        if (source.contains(WashingMachine.RULE_ALPHANUMERIC)) list.add(Check.ALPHANUMERIC);
+        if (source.contains(WashingMachine.RULE_ONLYALPHA)) list.add(Check.ONLYALPHA);
+        if (source.contains(WashingMachine.RULE_ONLYNUMERIC)) list.add(Check.ONLYNUMERIC);
+        if (source.contains(WashingMachine.RULE_INTEGER)) list.add(Check.INTEGER);
+        if (source.contains(WashingMachine.RULE_BOOLEAN)) list.add(Check.BOOLEAN);
+        if (minNumeric != null) list.add(Check.MINNUMERIC);
+        if (maxNumeric != null) list.add(Check.MAXNUMERIC);
+        if (source.contains(WashingMachine.RULE_CALENDARDATE)) list.add(Check.CALENDARDATE);
+        if (source.contains(WashingMachine.RULE_MYSQLDATE)) list.add(Check.MYSQLDATE);
+        if (source.contains(WashingMachine.RULE_TIME)) list.add(Check.TIME);
+        this.checks = list.toArray(new Check[list.size()]);
+        this.costOrder = costOrder(checks);
+
+        if (list.contains(Check.INTEGER) || list.contains(Check.MINNUMERIC) || list.contains(Check.MAXNUMERIC)) {
+            this.type = ValueType.LONG;
+        } else if (list.contains(Check.BOOLEAN)) {
+            this.type = ValueType.BOOLEAN;
+        } else if (list.contains(Check.CALENDARDATE) || list.contains(Check.MYSQLDATE)) {
+            this.type = ValueType.DATE;
+        } else if (list.contains(Check.TIME)) {
+            this.type = ValueType.TIME;
+        } else {
+            this.type = ValueType.NONE;
+        }
+
+        this.maxLenText = String.valueOf(maxLen);
+        this.minLenText = String.valueOf(minLen);
+        this.exactLenText = String.valueOf(exactLen);
+        this.minNumericText = String.valueOf(minNumeric);
+        this.maxNumericText = String.valueOf(maxNumeric);
+    }
+
+    /**
+     * Compile a rule string
+     *
+     * @param rule the rule string, ex: "required|alphanumerical|maxlen,250"
+     * @return the compiled rule, or null if the rule is null
+     * @throws NumberFormatException if a bound does not fit in its type
+     */
+    public static CompiledRule compile(String rule) {
+        if (rule == null) {
+            return null;
+        }
+        return new CompiledRule(rule);
+    }
+
+    /**
+     * Look for the last occurrence of name followed by a comma and at least one digit,
+     * as the ".*name,([0-9]+).*" patterns used to do.
+     *
+     * @return the bound or NO_BOUND if the rule does not contain it
+     */
+    private static int parseBound(String rule, String name) {
+        String prefix = name + ",";
+        int from = rule.length();
+        while (from >= 0) {
+            int at = rule.lastIndexOf(prefix, from);
+            if (at < 0) {
+                return NO_BOUND;
+            }
+            int start = at + prefix.length();
+            int end = start;
+            while (end < rule.length() && rule.charAt(end) >= '0' && rule.charAt(end) <= '9') {
+                end++;
+            }
+            if (end > start) {
+                String digits = rule.substring(start, end);
+                return Integer.parseInt(digits);
+            }
+            from = at - 1;
+        }
+        return NO_BOUND;
+    }
+
+    /**
+     * Look for the last occurrence of name followed by a comma and a number, with an optional minus
+     * sign and an optional fraction after a dot, ex: "minnumeric,-2.5"
+     *
+     * @return the bound or null if the rule does not contain it
+     */
+    private static Decimal parseDecimalBound(String rule, String name) {
+        String prefix = name + ",";
+        int from = rule.length();
+        while (from >= 0) {
+            int at = rule.lastIndexOf(prefix, from);
+            if (at < 0) {
+                return null;
+            }
+            int start = at + prefix.length();
+            int end = start < rule.length() && rule.charAt(start) == '-' ? start + 1 : start;
+            int digits = end;
+            while (end < rule.length() && CharClasses.isDigit(rule.charAt(end))) {
+                end++;
+            }
+            if (end > digits) {
+                if (end + 1 < rule.length() && rule.charAt(end) == '.' && CharClasses.isDigit(rule.charAt(end + 1))) {
+                    end++;
+                    while (end < rule.length() && CharClasses.isDigit(rule.charAt(end))) {
+                        end++;
+                    }
+                }
+                return Decimal.parse(rule.substring(start, end));
+            }
+            from = at - 1;
+        }
+        return null;
+    }
+
+    /**
+     * @return the checks sorted by cost, the sort is stable so checks with the same cost keep their order
+     */
+    private static Check[] costOrder(Check[] checks) {
+        List<Check> out = new ArrayList<>(checks.length);
+        for (Check c : checks) {
+            if (!(c == Check.MAXNUMERIC && out.contains(Check.MINNUMERIC))) {
+                out.add(c);
+            }
+        }
+        Collections.sort(out, new Comparator<Check>() {
+            @Override
+            public int compare(Check a, Check b) {
+                return Integer.compare(a.cost, b.cost);
+            }
+        });
+        return out.toArray(new Check[out.size()]);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    public boolean isCheckbox() {
+        return checkbox;
+    }
+
+    Check[] getChecks() {
+        return checks;
+    }
+
+    Check[] getCostOrder() {
+        return costOrder;
+    }
+
+    public ValueType getType() {
+        return type;
+    }
+
+    /**
+     * The value to use when a checkbox field has not been sent back by the browser
+     */
+    String missingCheckboxValue() {
+        return numericDefault ? "0" : "";
+    }
+
+    /**
+     * Check a value against this rule
+     *
+     * The checks run from the cheapest, so a value that is not good is usually rejected by a length
+     * check before any scan. The error reported is still the one of the first failing check in the
+     * order the checks have always been applied, see firstFailure.
+     *
+     * @param value the value to check, it must be not null
+     * @return null if the value follows the rule, otherwise the reason of the first failing check
+     */
+    ErrorCode check(String value) {
+        for (Check c : costOrder) {
+            ErrorCode code = fails(c, value);
+            if (code != null) {
+                return firstFailure(value, c, code);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A value failed the check found with code, the checks coming before it in the original order
+     * are run again to report the same error the original order would have reported
+     */
+    ErrorCode firstFailure(String value, Check found, ErrorCode code) {
+        for (Check c : checks) {
+            if (c == found || (c.isNumeric() && found.isNumeric())) {
+                return code;
+            }
+            ErrorCode earlier = fails(c, value);
+            if (earlier != null) {
+                return earlier;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Run a single check, minnumeric and maxnumeric are checked together with a single parsing of the number
+     *
+     * @return null if the value passes the check, otherwise its ErrorCode
+     */
+    ErrorCode fails(Check c, String value) {
+        switch (c) {
+            case REQUIRED:
+                return value.trim().length() == 0 ? ErrorCode.REQUIRED : null;
+            case MAXLEN:
+                return value.length() > maxLen ? ErrorCode.MAXLEN : null;
+            case MINLEN:
+                return value.length() < minLen ? ErrorCode.MINLEN : null;
+            case EXACTLEN:
+                return value.length() != exactLen ? ErrorCode.EXACTLEN : null;
+            case ALPHANUMERIC:
+                return emptyOr(value, CharClasses.isAlphanumeric(value)) ? null : ErrorCode.ALPHANUMERIC;
+            case ONLYALPHA:
+                return emptyOr(value, CharClasses.isOnlyAlpha(value)) ? null : ErrorCode.ONLYALPHA;
+            case ONLYNUMERIC:
+                return emptyOr(value, CharClasses.isOnlyNumeric(value)) ? null : ErrorCode.ONLYNUMERIC;
+            case INTEGER:
+                return emptyOr(value, CharClasses.isInteger(value)) ? null : ErrorCode.INTEGER;
+            case BOOLEAN:
+                return CharClasses.isBoolean(value) ? null : ErrorCode.BOOLEAN;
+            case MINNUMERIC:
+            case MAXNUMERIC:
+                return Decimal.check(value, minNumeric, maxNumeric);
+            case CALENDARDATE:
+                return emptyOr(value, isCalendarDate(value)) ? null : ErrorCode.CALENDARDATE;
+            case MYSQLDATE:
+                return emptyOr(value, isMySqlDate(value)) ? null : ErrorCode.MYSQLDATE;
+            case TIME:
+                return emptyOr(value, isTime(value)) ? null : ErrorCode.TIME;
+            default:
+                throw new IllegalArgumentException("Unknown check " + c);
+        }
+    }
+
+    /**
+     * The longest value that can follow this rule, NO_BOUND when it is not limited by maxlen or exactlen
+     */
+    int lengthLimit() {
+        int limit = NO_BOUND;
+        if (maxLen != NO_BOUND) {
+            limit = maxLen;
+        }
+        if (exactLen != NO_BOUND && (limit == NO_BOUND || exactLen < limit)) {
+            limit = exactLen;
+        }
+        return limit;
+    }
+
+    /**
+     * @return the character classes, see CharClasses, every character of a value needs to belong to
+     * when the value is not empty
+     */
+    int requiredClasses() {
+        int classes = 0;
+        for (Check c : checks) {
+            switch (c) {
+                case ALPHANUMERIC:
+                    classes |= CharClasses.ALPHANUMERIC;
+                    break;
+                case ONLYALPHA:
+                    classes |= CharClasses.ALPHA;
+                    break;
+                case ONLYNUMERIC:
+                    classes |= CharClasses.NUMERIC;
+                    break;
+                case INTEGER:
+                    classes |= CharClasses.DIGIT;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @return the checks, in cost order, that need the whole value and not only its length and classes
+     */
+    Check[] checksNeedingValue() {
+        List<Check> rest = new ArrayList<>();
+        for (Check c : costOrder) {
+            if (!c.isBySummary()) {
+                rest.add(c);
+            }
+        }
+        return rest.toArray(new Check[rest.size()]);
+    }
+
+    /**
+     * Check a value known only by its length and by what its characters are, as it is while it is
+     * decoded: only the checks up to integer can be answered this way.
+     *
+     * @param blank true if every character is a space or a control character, as trim removes them
+     * @param notOnlySpaces true if at least one character is not a space
+     * @param classes the classes all the characters belong to, see CharClasses.classesOf
+     * @return the reason of the first failing check, null if no check fails or the answer needs the whole value
+     */
+    ErrorCode check(int length, boolean blank, boolean notOnlySpaces, int classes) {
+        boolean emptyAllowed = !required && length == 0;
+        for (Check c : checks) {
+            switch (c) {
+                case REQUIRED:
+                    if (blank) {
+                        return ErrorCode.REQUIRED;
+                    }
+                    break;
+                case MAXLEN:
+                    if (length > maxLen) {
+                        return ErrorCode.MAXLEN;
+                    }
+                    break;
+                case MINLEN:
+                    if (length < minLen) {
+                        return ErrorCode.MINLEN;
+                    }
+                    break;
+                case EXACTLEN:
+                    if (length != exactLen) {
+                        return ErrorCode.EXACTLEN;
+                    }
+                    break;
+                case ALPHANUMERIC:
+                    if (!emptyAllowed && (classes & CharClasses.ALPHANUMERIC) == 0) {
+                        return ErrorCode.ALPHANUMERIC;
+                    }
+                    break;
+                case ONLYALPHA:
+                    if (!emptyAllowed && ((classes & CharClasses.ALPHA) == 0 || !notOnlySpaces)) {
+                        return ErrorCode.ONLYALPHA;
+                    }
+                    break;
+                case ONLYNUMERIC:
+                    if (!emptyAllowed && ((classes & CharClasses.NUMERIC) == 0 || !notOnlySpaces)) {
+                        return ErrorCode.ONLYNUMERIC;
+                    }
+                    break;
+                case INTEGER:
+                    if (!emptyAllowed && ((classes & CharClasses.DIGIT) == 0 || length == 0)) {
+                        return ErrorCode.INTEGER;
+                    }
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    static boolean isCalendarDate(String value) {
+        return DateTimes.parseCalendarDate(value) != DateTimes.NO_VALUE;
+    }
+
+    static boolean isMySqlDate(String value) {
+        return DateTimes.parseMySqlDate(value) != DateTimes.NO_VALUE;
+    }
+
+    static boolean isTime(String value) {
+        return DateTimes.parseTime(value) != DateTimes.NO_VALUE;
+    }
+
+    /**
+     * The typed form of a value that follows this rule, see getType
+     *
+     * @param value a value for which check gave no error
+     * @return the long, 1/0 for true/false, the packed date or time, NO_VALUE if the value is empty or too big
+     */
+    long typedValue(String value) {
+        if (value.length() == 0) {
+            return NO_VALUE;
+        }
+        switch (type) {
+            case LONG:
+                return parseLong(value);
+            case BOOLEAN:
+                return "true".equals(value) ? 1 : 0;
+            case DATE:
+                int date = DateTimes.parseMySqlDate(value);
+                if (date == DateTimes.NO_VALUE) {
+                    date = DateTimes.parseCalendarDate(value);
+                }
+                return date == DateTimes.NO_VALUE ? NO_VALUE : date;
+            case TIME:
+                int time = DateTimes.parseTime(value);
+                return time == DateTimes.NO_VALUE ? NO_VALUE : time;
+            default:
+                return NO_VALUE;
+        }
+    }
+
+    /**
+     * Parse a long as Long.parseLong does, but without exceptions
+     *
+     * @return the number or NO_VALUE if the value is not a number or it is out of range
+     */
+    static long parseLong(String value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == length) {
+            return NO_VALUE;
+        }
+        long out = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (!CharClasses.isDigit(c) || out > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return NO_VALUE;
+            }
+            out = out * 10 + (c - '0');
+        }
+        return negative ? -out : out;
+    }
+
+    /**
+     * @return the error for a value that failed the check reported by check(value)
+     */
+    ValidationError error(String field, ErrorCode code, String value) {
+        return error(field, code, value.length());
+    }
+
+    ValidationError error(String field, ErrorCode code, int length) {
+        String bound;
+        switch (code) {
+            case MAXLEN:
+                bound = maxLenText;
+                break;
+            case MINLEN:
+                bound = minLenText;
+                break;
+            case EXACTLEN:
+                bound = exactLenText;
+                break;
+            case MINNUMERIC:
+                bound = minNumericText;
+                break;
+            case MAXNUMERIC:
+                bound = maxNumericText;
+                break;
+            default:
+                bound = null;
+        }
+        return new ValidationError(field, code, bound, length);
+    }
+
+    /**
+     * A field that is not required can be left empty
+     */
+    private boolean emptyOr(String value, boolean matches) {
+        return matches || (!required && value.length() == 0);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,200 @@
+package net.funambolo;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a CSV file one at a time, the first row contains the names of the fields.
+ *
+ * Fields can be quoted with double quotes following RFC 4180, a quoted field can contain separators,
+ * line breaks and doubled quotes. A row with less fields than the header gives null for the missing
+ * ones, as a form that did not send them.
+ *
+ * A record longer than the maximum record length, counting its separators and line breaks, stops
+ * the reading with an IllegalArgumentException as a malformed one: a file with an unterminated
+ * quote or without line breaks would otherwise be kept in memory all at once.
+ */
+public final class CsvRecordReader implements Iterator<Map<String, String>>, Closeable {
+    private static final int NONE = -2;
+
+    public static final int DEFAULT_MAX_RECORD_LENGTH = 1 << 20;
+
+    private final Reader reader;
+    private final char separator;
+    private final int maxRecordLength;
+    private final String[] header;
+    private final StringBuilder field = new StringBuilder();
+    private long line = 1;
+    // characters read for the current record and the line it starts at
+    private int recordLength;
+    private long recordStart;
+    // a character read too much, NONE when there is not
+    private int pushedBack = NONE;
+    private Map<String, String> next;
+
+    public CsvRecordReader(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CsvRecordReader(Reader reader, char separator) {
+        this(reader, separator, DEFAULT_MAX_RECORD_LENGTH);
+    }
+
+    /**
+     * @param reader the CSV text
+     * @param separator the character between the fields
+     * @param maxRecordLength how many characters a record, the header included, can be long
+     */
+    public CsvRecordReader(Reader reader, char separator, int maxRecordLength) {
+        if (maxRecordLength <= 0) {
+            throw new IllegalArgumentException("The maximum record length must be positive");
+        }
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        this.separator = separator;
+        this.maxRecordLength = maxRecordLength;
+        List<String> names = readRow();
+        if (names == null) {
+            throw new IllegalArgumentException("The CSV has no header");
+        }
+        this.header = names.toArray(new String[names.size()]);
+    }
+
+    public String[] getHeader() {
+        return header.clone();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            List<String> row = readRow();
+            if (row == null) {
+                return false;
+            }
+            if (row.size() > header.length) {
+                throw new IllegalArgumentException("The CSV row ending at line " + (line - 1) + " has more fields than the header");
+            }
+            next = new HashMap<>((int) (header.length / 0.75f) + 1);
+            for (int i = 0; i < header.length; i++) {
+                next.put(header[i], i < row.size() ? row.get(i) : null);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<String, String> out = next;
+        next = null;
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * @return the fields of the next row, skipping empty lines, or null at the end of the input
+     */
+    private List<String> readRow() {
+        try {
+            recordLength = 0;
+            recordStart = line;
+            int c = read();
+            while (c == '\r' || c == '\n') {
+                endOfLine(c);
+                recordLength = 0;
+                recordStart = line;
+                c = read();
+            }
+            if (c == -1) {
+                return null;
+            }
+            List<String> row = new ArrayList<>();
+            while (true) {
+                field.setLength(0);
+                if (c == '"') {
+                    c = readQuoted();
+                } else {
+                    while (c != separator && c != '\r' && c != '\n' && c != -1) {
+                        field.append((char) c);
+                        c = read();
+                    }
+                }
+                row.add(field.toString());
+                if (c == separator) {
+                    c = read();
+                } else if (c == -1) {
+                    return row;
+                } else if (c == '\r' || c == '\n') {
+                    endOfLine(c);
+                    return row;
+                } else {
+                    throw new IllegalArgumentException("Unexpected character after a quoted field at line " + line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the character after the closing quote
+     */
+    private int readQuoted() throws IOException {
+        long start = line;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IllegalArgumentException("Unterminated quoted field starting at line " + start);
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    return c;
+                }
+            } else if (c == '\n') {
+                line++;
+            }
+            field.append((char) c);
+        }
+    }
+
+    /**
+     * Consume a \r, \n or \r\n line break, c is its first character
+     */
+    private void endOfLine(int c) throws IOException {
+        line++;
+        if (c == '\r') {
+            int after = read();
+            if (after != '\n') {
+                pushedBack = after;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        int c = reader.read();
+        if (c != -1 && ++recordLength > maxRecordLength) {
+            throw new IllegalArgumentException("The CSV record starting at line " + recordStart + " is longer than " + maxRecordLength + " characters");
+        }
+        return c;
+    }
+}
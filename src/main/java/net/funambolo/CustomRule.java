@@ -0,0 +1,132 @@
+package net.funambolo;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A check the rule strings can not express, ex: "username not already taken" or "code exists in
+ * catalog". It runs after the rules of WashingMachine, only on the clean values of the fields that
+ * are good and not empty, see AsyncValidator.
+ *
+ * The message is appended to the name of the field, ex: "is already taken" gives
+ * "The username field is already taken".
+ *
+ * Example of usage
+ * CustomRule.of("needs to be even", value -> Long.parseLong(value) % 2 == 0)
+ * CustomRule.async("is not reachable", value -> pinger.ping(value))
+ * CustomRule.mustNotExist("is already taken", usernames)
+ *
+ * The rules built with mustExist and mustNotExist are looked up in batch: AsyncValidator collects
+ * their values from every field and every record and sends them to each LookupResolver with one call.
+ */
+public abstract class CustomRule {
+    private final String message;
+
+    protected CustomRule(String message) {
+        if (message == null) {
+            throw new IllegalArgumentException("The message can not be null");
+        }
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @param value the clean value of the field, never empty
+     * @return a future completed with true if the value is good, it can be completed by any thread
+     */
+    public abstract CompletableFuture<Boolean> test(String value);
+
+    public static CustomRule of(String message, final Predicate<String> check) {
+        if (check == null) {
+            throw new IllegalArgumentException("The check can not be null");
+        }
+        return new CustomRule(message) {
+            @Override
+            public CompletableFuture<Boolean> test(String value) {
+                return CompletableFuture.completedFuture(check.test(value));
+            }
+        };
+    }
+
+    public static CustomRule async(String message, final Function<String, CompletableFuture<Boolean>> check) {
+        if (check == null) {
+            throw new IllegalArgumentException("The check can not be null");
+        }
+        return new CustomRule(message) {
+            @Override
+            public CompletableFuture<Boolean> test(String value) {
+                return check.apply(value);
+            }
+        };
+    }
+
+    /**
+     * @return a rule accepting only the values found by the resolver
+     */
+    public static CustomRule mustExist(String message, LookupResolver resolver) {
+        return new Lookup(message, resolver, true);
+    }
+
+    /**
+     * @return a rule accepting only the values not found by the resolver
+     */
+    public static CustomRule mustNotExist(String message, LookupResolver resolver) {
+        return new Lookup(message, resolver, false);
+    }
+
+    /**
+     * A rule answered by a LookupResolver, AsyncValidator looks up its values together with the
+     * values of every other rule using the same resolver
+     */
+    static final class Lookup extends CustomRule {
+        private final LookupResolver resolver;
+        private final boolean mustExist;
+
+        Lookup(String message, LookupResolver resolver, boolean mustExist) {
+            super(message);
+            if (resolver == null) {
+                throw new IllegalArgumentException("The resolver can not be null");
+            }
+            this.resolver = resolver;
+            this.mustExist = mustExist;
+        }
+
+        LookupResolver getResolver() {
+            return resolver;
+        }
+
+        boolean accepts(Set<String> found, String value) {
+            if (found == null) {
+                throw nullAnswer(resolver);
+            }
+            return found.contains(value) == mustExist;
+        }
+
+        /**
+         * A resolver must give back a set, empty when no key exists: a null is not taken as "nothing
+         * found", that would accept every value of mustNotExist
+         */
+        static IllegalStateException nullAnswer(LookupResolver resolver) {
+            return new IllegalStateException("The LookupResolver " + resolver + " gave back null instead of the set of the existing keys");
+        }
+
+        /**
+         * A lookup of a single value, used only when the rule is tested on its own
+         */
+        @Override
+        public CompletableFuture<Boolean> test(final String value) {
+            return resolver.findExisting(Collections.singleton(value)).thenApply(new Function<Set<String>, Boolean>() {
+                @Override
+                public Boolean apply(Set<String> found) {
+                    return accepts(found, value);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package net.funambolo;
+
+/**
+ * Parsers of the dates and times accepted by the rules, giving back their packed int form:
+ * - dates are packed as yyyy * 10000 + mm * 100 + dd, ex: 22/05/2017 -> 20170522
+ * - times are packed as the minutes from midnight, ex: 12:45 -> 765
+ *
+ * Each parser reads the value once, digit by digit, with no regular expression and no allocation,
+ * and it checks the real ranges: months from 1 to 12, days up to the length of the month, leap
+ * years included, hours from 0 to 23 and minutes from 0 to 59. So 31/02/2017, 2017-13-99 and 99:99
+ * are not valid.
+ */
+final class DateTimes {
+
+    static final int NO_VALUE = -1;
+
+    private DateTimes() {
+    }
+
+    static int pack(int year, int month, int day) {
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * @param value a date as d/m/yyyy or dd/mm/yyyy, each separator can be / or -
+     * @return the packed date or NO_VALUE if the value is not a valid date
+     */
+    static int parseCalendarDate(String value) {
+        int length = value.length();
+        // d/m/yyyy is 8 characters, dd/mm/yyyy is 10
+        if (length < 8 || length > 10) {
+            return NO_VALUE;
+        }
+        int firstSeparator = isSeparator(value.charAt(1)) ? 1 : 2;
+        if (!isSeparator(value.charAt(firstSeparator))) {
+            return NO_VALUE;
+        }
+        int secondSeparator = length - 5;
+        if (secondSeparator - firstSeparator < 2 || secondSeparator - firstSeparator > 3 || !isSeparator(value.charAt(secondSeparator))) {
+            return NO_VALUE;
+        }
+        int day = digits(value, 0, firstSeparator);
+        int month = digits(value, firstSeparator + 1, secondSeparator);
+        int year = digits(value, secondSeparator + 1, length);
+        return check(year, month, day);
+    }
+
+    /**
+     * @param value a date as yyyy-mm-dd
+     * @return the packed date or NO_VALUE if the value is not a valid date
+     */
+    static int parseMySqlDate(String value) {
+        if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return NO_VALUE;
+        }
+        return check(digits(value, 0, 4), digits(value, 5, 7), digits(value, 8, 10));
+    }
+
+    /**
+     * @param value a time as hh:mm
+     * @return the minutes from midnight or NO_VALUE if the value is not a valid time
+     */
+    static int parseTime(String value) {
+        if (value.length() != 5 || value.charAt(2) != ':') {
+            return NO_VALUE;
+        }
+        int hours = digits(value, 0, 2);
+        int minutes = digits(value, 3, 5);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+            return NO_VALUE;
+        }
+        return hours * 60 + minutes;
+    }
+
+    private static int check(int year, int month, int day) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return NO_VALUE;
+        }
+        return pack(year, month, day);
+    }
+
+    static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '-';
+    }
+
+    /**
+     * @return the number written with the digits from begin to end, or -1 if there are other characters
+     */
+    static int digits(String value, int begin, int end) {
+        if (begin >= end || end > value.length()) {
+            return -1;
+        }
+        int out = 0;
+        for (int i = begin; i < end; i++) {
+            char c = value.charAt(i);
+            if (!CharClasses.isDigit(c)) {
+                return -1;
+            }
+            out = out * 10 + (c - '0');
+        }
+        return out;
+    }
+}
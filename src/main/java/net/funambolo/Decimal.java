@@ -0,0 +1,182 @@
+package net.funambolo;
+
+import java.math.BigDecimal;
+
+/**
+ * A decimal bound of minnumeric or maxnumeric, ex: "minnumeric,-2.5", kept as mantissa * 10^-scale,
+ * and the single pass parser that compares a received value with the bounds.
+ *
+ * The received value can have a sign and a decimal separator, dot or comma. When both dots and
+ * commas are used the last one is the decimal separator and the others group the thousands, as in
+ * 1.234,56 or 1,234.56. When only one of them is used it is the decimal separator if it appears
+ * once, as in 12,5, otherwise it groups the thousands, as in 1.234.567. Groups of thousands must
+ * have three digits.
+ *
+ * The value is read once, with no allocation and no exception. Values with more than 18 significant
+ * digits do not fit a long and they are not numeric.
+ */
+final class Decimal {
+    private final long mantissa;
+    private final int scale;
+    private final String text;
+
+    private Decimal(long mantissa, int scale, String text) {
+        this.mantissa = mantissa;
+        this.scale = scale;
+        this.text = text;
+    }
+
+    /**
+     * @param bound a bound as written in a rule, ex: 10, -3 or 2.75
+     * @throws NumberFormatException if the bound is not a number or it has more than 18 significant digits
+     */
+    static Decimal parse(String bound) {
+        BigDecimal value = new BigDecimal(bound).stripTrailingZeros();
+        if (value.scale() < 0) {
+            value = value.setScale(0);
+        }
+        if (value.unscaledValue().bitLength() > 63) {
+            throw new NumberFormatException("The bound " + bound + " is too big");
+        }
+        return new Decimal(value.unscaledValue().longValue(), value.scale(), value.toPlainString());
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Compare the value with the bounds
+     *
+     * @param min the minimum allowed value, null if there is no minimum
+     * @param max the maximum allowed value, null if there is no maximum
+     * @return null if the value is inside the bounds, otherwise NOT_NUMERIC, MINNUMERIC or MAXNUMERIC
+     */
+    static ErrorCode check(String value, Decimal min, Decimal max) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i = 1;
+        }
+        long mantissa = 0;
+        // zeros read after the last digit that is not zero, they are added to the mantissa only when needed
+        int zeros = 0;
+        int dots = 0;
+        int commas = 0;
+        char lastSeparator = 0;
+        int firstGroup = -1;
+        int group = 0;
+        boolean groupsOfThree = true;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (CharClasses.isDigit(c)) {
+                group++;
+                if (c == '0') {
+                    if (mantissa != 0) {
+                        zeros++;
+                    }
+                    continue;
+                }
+                mantissa = shift(mantissa, zeros);
+                if (mantissa < 0 || mantissa > (Long.MAX_VALUE - (c - '0')) / 10) {
+                    return ErrorCode.NOT_NUMERIC;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                zeros = 0;
+            } else if (c == '.' || c == ',') {
+                if (group == 0) {
+                    return ErrorCode.NOT_NUMERIC;
+                }
+                if (firstGroup < 0) {
+                    firstGroup = group;
+                } else if (group != 3) {
+                    groupsOfThree = false;
+                }
+                if (c == '.') {
+                    dots++;
+                } else {
+                    commas++;
+                }
+                lastSeparator = c;
+                group = 0;
+            } else {
+                return ErrorCode.NOT_NUMERIC;
+            }
+        }
+        if (group == 0) {
+            return ErrorCode.NOT_NUMERIC;
+        }
+
+        int scale = 0;
+        if (dots + commas > 0) {
+            int lastCount = lastSeparator == '.' ? dots : commas;
+            boolean decimal = lastCount == 1;
+            boolean grouped = decimal ? dots + commas > 1 : dots == 0 || commas == 0;
+            if (!grouped && !decimal) {
+                return ErrorCode.NOT_NUMERIC;
+            }
+            if (grouped && (firstGroup > 3 || !groupsOfThree || (!decimal && group != 3))) {
+                return ErrorCode.NOT_NUMERIC;
+            }
+            if (decimal) {
+                scale = group;
+            }
+        }
+        // the zeros at the end of the fraction do not change the value
+        int fractionZeros = Math.min(zeros, scale);
+        scale -= fractionZeros;
+        mantissa = shift(mantissa, zeros - fractionZeros);
+        if (mantissa < 0) {
+            return ErrorCode.NOT_NUMERIC;
+        }
+        if (mantissa == 0) {
+            scale = 0;
+        }
+        if (negative) {
+            mantissa = -mantissa;
+        }
+        if (min != null && compare(mantissa, scale, min.mantissa, min.scale) < 0) {
+            return ErrorCode.MINNUMERIC;
+        }
+        if (max != null && compare(mantissa, scale, max.mantissa, max.scale) > 0) {
+            return ErrorCode.MAXNUMERIC;
+        }
+        return null;
+    }
+
+    /**
+     * @return mantissa * 10^digits, -1 if it does not fit a long
+     */
+    private static long shift(long mantissa, int digits) {
+        for (int k = 0; k < digits && mantissa != 0; k++) {
+            if (mantissa > Long.MAX_VALUE / 10) {
+                return -1;
+            }
+            mantissa *= 10;
+        }
+        return mantissa;
+    }
+
+    /**
+     * Compare a * 10^-aScale with b * 10^-bScale, both scales are not negative
+     */
+    static int compare(long a, int aScale, long b, int bScale) {
+        if (Long.signum(a) != Long.signum(b)) {
+            return Long.compare(Long.signum(a), Long.signum(b));
+        }
+        if (aScale < bScale) {
+            return -compare(b, bScale, a, aScale);
+        }
+        // same sign: bring b to the scale of a, if it does not fit its magnitude is bigger than the one of a
+        for (int k = bScale; k < aScale; k++) {
+            if (b > Long.MAX_VALUE / 10 || b < -(Long.MAX_VALUE / 10)) {
+                return b > 0 ? -1 : 1;
+            }
+            b *= 10;
+        }
+        return Long.compare(a, b);
+    }
+}
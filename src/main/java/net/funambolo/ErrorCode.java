@@ -0,0 +1,76 @@
+package net.funambolo;
+
+import java.io.IOException;
+
+/**
+ * The reason why a field is not good, together with the template of its message.
+ *
+ * In the templates {field} is replaced by the name of the field, {bound} by the bound given in the
+ * rule and {length} by the length of the received value. Templates are split in pieces once, when
+ * the enum is loaded, so rendering a message is only a sequence of appends.
+ */
+public enum ErrorCode {
+    NO_RULE("No check defined for the field {field}"),
+    NOT_DEFINED("The field {field} has not been defined"),
+    REQUIRED("The {field} field is required"),
+    MAXLEN("The {field} field needs to be shorter than {length} character"),
+    MINLEN("The {field} field needs to be longer than {length} character"),
+    EXACTLEN("The {field} field needs to be exactly {length} character in length"),
+    ALPHANUMERIC("The {field} field may only contain alpha-numeric characters"),
+    ONLYALPHA("The {field} field may only contain alpha characters"),
+    ONLYNUMERIC("The {field} field may only contain numeric characters"),
+    INTEGER("The {field} field may only contain integer number"),
+    BOOLEAN("The {field} field may only contain a true or false value"),
+    NOT_NUMERIC("The {field} field needs to be numeric"),
+    MINNUMERIC("The {field} field needs to greater then {bound}"),
+    MAXNUMERIC("The {field} field needs to less then {bound}"),
+    CALENDARDATE("The {field} field needs to be a valid date"),
+    MYSQLDATE("The {field} field needs to be a valid date"),
+    TIME("The {field} field needs to be a valid time"),
+    TOO_LONG("The {field} field can not be longer than {bound} character"),
+    TIMEOUT("The {field} field could not be checked in time"),
+    CUSTOM("The {field} field {bound}"),
+    MALFORMED("The {field} field is not correctly encoded");
+
+    private static final String FIELD = "{field}";
+    private static final String BOUND = "{bound}";
+    private static final String LENGTH = "{length}";
+
+    private final String template;
+    private final String beforeField;
+    private final String afterField;
+    private final String afterNumber;
+    private final boolean withBound;
+    private final boolean withLength;
+
+    ErrorCode(String template) {
+        this.template = template;
+        int field = template.indexOf(FIELD);
+        this.beforeField = template.substring(0, field);
+        String rest = template.substring(field + FIELD.length());
+        this.withBound = rest.contains(BOUND);
+        this.withLength = rest.contains(LENGTH);
+        if (withBound || withLength) {
+            int number = rest.indexOf(withBound ? BOUND : LENGTH);
+            this.afterField = rest.substring(0, number);
+            this.afterNumber = rest.substring(number + (withBound ? BOUND : LENGTH).length());
+        } else {
+            this.afterField = rest;
+            this.afterNumber = "";
+        }
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    void render(Appendable out, String field, String bound, int length) throws IOException {
+        out.append(beforeField).append(String.valueOf(field)).append(afterField);
+        if (withBound) {
+            out.append(bound);
+        } else if (withLength) {
+            out.append(String.valueOf(length));
+        }
+        out.append(afterNumber);
+    }
+}
@@ -0,0 +1,436 @@
+package net.funambolo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Validates an application/x-www-form-urlencoded body, as sent by an HTML form, reading its bytes
+ * directly, without decoding it in a map of Strings first.
+ *
+ * The body is read once. Names and values are percent-decoded, '+' is a space, and UTF-8-decoded
+ * while they are read, and each character of a value is checked on the fly against the rule of its
+ * field: its length against maxlen, exactlen and the maximum length of the Validator, and its
+ * character against the classes of alphanumerical, onlyalpha, onlynumeric and integer. As soon as a
+ * value can not be good its characters are not kept anymore, the rest of the value is only read to
+ * find where it ends, so an oversized or invalid value is never buffered whole. Only the values
+ * still good at their end become Strings, and they are then validated by the Validator as
+ * validate(ParameterSource, mode) would do, many values of the same field included.
+ *
+ * The error reported for a field is the same the Validator would report for the decoded value. A
+ * value that is not correctly percent or UTF-8 encoded is rejected with ErrorCode.MALFORMED. A
+ * name longer than every field name is not read whole, it is reported as an unknown field named
+ * with its start followed by "...", ex: privacyPolicy as privacy... when privacy is the longest name.
+ * With FAIL_FAST the reading stops at the first value known not to be good, so the field reported
+ * may be a later one than the field validate(ParameterSource, FAIL_FAST) would report.
+ *
+ * Example of usage
+ * private static final FormBodyValidator USER_FORM = new FormBodyValidator(Validator.compile(rules));
+ * ...
+ * ValidationResult result = USER_FORM.validate(request.getInputStream(), ValidationMode.COLLECT_ALL);
+ */
+public final class FormBodyValidator {
+    private static final int END = -1;
+
+    private final Validator validator;
+    // by ordinal, how many characters of a value are kept before it is known to be too long
+    private final int[] lengthLimits;
+    // by ordinal, the classes every character of a value must belong to
+    private final int[] requiredClasses;
+    // a name longer than every field name is not kept whole, it is an unknown field reported with its start and "..."
+    private final int maxNameLength;
+
+    public FormBodyValidator(Validator validator) {
+        if (validator == null) {
+            throw new IllegalArgumentException("The validator can not be null");
+        }
+        this.validator = validator;
+        RuleSet rules = validator.getRuleSet();
+        this.lengthLimits = new int[rules.size()];
+        this.requiredClasses = new int[rules.size()];
+        int longestName = 0;
+        for (int ordinal = 0; ordinal < rules.size(); ordinal++) {
+            String field = rules.fieldAt(ordinal);
+            if (field != null) {
+                // the null field name can not be in a body
+                longestName = Math.max(longestName, field.length());
+            }
+            int limit = validator.getMaxValueLength();
+            CompiledRule rule = rules.ruleAt(ordinal);
+            if (rule == null) {
+                // the field is rejected whatever its value is
+                limit = 0;
+            } else {
+                if (rule.lengthLimit() != CompiledRule.NO_BOUND) {
+                    limit = Math.min(limit, rule.lengthLimit());
+                }
+                requiredClasses[ordinal] = rule.requiredClasses();
+            }
+            lengthLimits[ordinal] = limit;
+        }
+        this.maxNameLength = longestName;
+    }
+
+    public Validator getValidator() {
+        return validator;
+    }
+
+    /**
+     * @param body the body, read from its position to its limit, the position is not moved
+     * @param mode COLLECT_ALL to check every field, FAIL_FAST to stop reading at the first field that is not good
+     */
+    public ValidationResult validate(ByteBuffer body, ValidationMode mode) {
+        try {
+            return validate(new BufferSource(body.duplicate()), mode);
+        } catch (IOException e) {
+            // a ByteBuffer never throws
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param body the body, read up to its end, or up to the first field that is not good with FAIL_FAST, it is not closed
+     * @param mode COLLECT_ALL to check every field, FAIL_FAST to stop reading at the first field that is not good
+     */
+    public ValidationResult validate(InputStream body, ValidationMode mode) throws IOException {
+        return validate(new StreamSource(body), mode);
+    }
+
+    private ValidationResult validate(Source in, ValidationMode mode) throws IOException {
+        ValidationMetrics metrics = validator.getMetrics();
+        if (metrics == null) {
+            return parse(in, mode);
+        }
+        long start = System.nanoTime();
+        ValidationResult result = parse(in, mode);
+        metrics.called(result, System.nanoTime() - start);
+        return result;
+    }
+
+    private ValidationResult parse(Source in, ValidationMode mode) throws IOException {
+        RuleSet rules = validator.getRuleSet();
+        ValidationResult result = validator.newResult();
+        boolean failFast = mode == ValidationMode.FAIL_FAST;
+        // by ordinal, the values still good at their end, null for the fields not received
+        List<List<String>> received = new ArrayList<>(Collections.<List<String>>nCopies(rules.size(), null));
+        Component name = new Component();
+        Component value = new Component();
+
+        int end = 0;
+        while (end != END) {
+            name.reset(maxNameLength, 0);
+            end = name.read(in, true);
+            if (name.length == 0) {
+                if (end == '=') {
+                    // a value with no name
+                    value.reset(0, 0);
+                    end = value.read(in, false);
+                }
+                continue;
+            }
+            int ordinal = name.malformed || name.length > maxNameLength ? -1 : rules.ordinalOf(name.toString());
+            boolean skip = ordinal < 0 || result.isRejected(ordinal);
+            value.reset(skip ? 0 : lengthLimits[ordinal], skip ? 0 : requiredClasses[ordinal]);
+            if (end == '=') {
+                end = value.read(in, false);
+            }
+            if (ordinal < 0) {
+                // only the start of a longer name is kept, it may be the name of a field: the dots
+                // make the name reported longer than every field name
+                String field = name.length > maxNameLength ? name + "..." : name.toString();
+                if (!result.isUnknown(field)) {
+                    validator.rejectUnknown(result, field);
+                }
+                if (failFast) {
+                    break;
+                }
+            } else if (!skip) {
+                ErrorCode code = value.error(rules.ruleAt(ordinal), validator.getMaxValueLength());
+                if (code != null) {
+                    if (received.get(ordinal) != null) {
+                        // an earlier value of the same field that is not good comes first
+                        String[] earlier = received.get(ordinal).toArray(new String[received.get(ordinal).size()]);
+                        received.set(ordinal, null);
+                        if (!validator.validateValues(ordinal, earlier, result, false)) {
+                            if (failFast) {
+                                break;
+                            }
+                            continue;
+                        }
+                    }
+                    validator.reject(result, ordinal, code, value.length);
+                    if (failFast) {
+                        break;
+                    }
+                } else {
+                    if (received.get(ordinal) == null) {
+                        received.set(ordinal, new ArrayList<String>(1));
+                    }
+                    received.get(ordinal).add(value.toString());
+                }
+            }
+        }
+
+        // with FAIL_FAST the values received are not validated when a field is already not good
+        for (int ordinal = 0; ordinal < received.size() && (!failFast || result.isGood()); ordinal++) {
+            if (received.get(ordinal) != null) {
+                String[] values = received.get(ordinal).toArray(new String[received.get(ordinal).size()]);
+                if (!validator.validateValues(ordinal, values, result, !failFast) && failFast) {
+                    break;
+                }
+            }
+        }
+        if (failFast) {
+            validator.finishFailFast(result);
+        }
+        return result;
+    }
+
+    /**
+     * A name or a value being decoded: the characters kept so far and what is known of all of them
+     */
+    private static final class Component {
+        private char[] chars = new char[64];
+        // characters decoded, kept or not
+        int length;
+        // characters kept, they are all the characters until the component is known not to be good
+        private int kept;
+        private boolean keeping;
+        private int limit;
+        private int required;
+        private int classes;
+        private boolean blank;
+        private boolean notOnlySpaces;
+        boolean malformed;
+
+        // the UTF-8 sequence being decoded
+        private int codePoint;
+        private int pending;
+        private int minimum;
+
+        void reset(int limit, int required) {
+            this.length = 0;
+            this.kept = 0;
+            this.keeping = true;
+            this.limit = limit;
+            this.required = required;
+            this.classes = CharClasses.ALL;
+            this.blank = true;
+            this.notOnlySpaces = false;
+            this.malformed = false;
+            this.pending = 0;
+        }
+
+        /**
+         * Decode up to the end of the component
+         *
+         * @param name true for a name, which ends at '=' or '&', a value ends only at '&'
+         * @return the character ending the component, '=' or '&', or END
+         */
+        int read(Source in, boolean name) throws IOException {
+            while (true) {
+                int b = in.next();
+                if (b == END || b == '&' || (name && b == '=')) {
+                    if (pending != 0) {
+                        malformed();
+                    }
+                    return b;
+                }
+                if (b == '+') {
+                    decode(' ');
+                } else if (b == '%') {
+                    int high = hex(in.next());
+                    int low = high < 0 ? -1 : hex(in.next());
+                    if (low < 0) {
+                        // the character after % is read again as a normal character
+                        malformed();
+                        in.back();
+                    } else {
+                        decode(high << 4 | low);
+                    }
+                } else {
+                    decode(b);
+                }
+            }
+        }
+
+        private static int hex(int b) {
+            if (b >= '0' && b <= '9') {
+                return b - '0';
+            }
+            if (b >= 'a' && b <= 'f') {
+                return b - 'a' + 10;
+            }
+            if (b >= 'A' && b <= 'F') {
+                return b - 'A' + 10;
+            }
+            return -1;
+        }
+
+        /**
+         * One decoded byte of UTF-8
+         */
+        private void decode(int b) {
+            if (pending > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    codePoint = codePoint << 6 | (b & 0x3F);
+                    if (--pending == 0) {
+                        if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+                                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                            malformed();
+                        } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                            append((char) codePoint);
+                        } else {
+                            append(Character.highSurrogate(codePoint));
+                            append(Character.lowSurrogate(codePoint));
+                        }
+                    }
+                    return;
+                }
+                // the sequence is cut, the byte starts a new one
+                pending = 0;
+                malformed();
+            }
+            if (b < 0x80) {
+                append((char) b);
+            } else if (b >= 0xC2 && b <= 0xDF) {
+                start(b & 0x1F, 1, 0x80);
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                start(b & 0x0F, 2, 0x800);
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                start(b & 0x07, 3, Character.MIN_SUPPLEMENTARY_CODE_POINT);
+            } else {
+                malformed();
+            }
+        }
+
+        private void start(int bits, int continuation, int min) {
+            codePoint = bits;
+            pending = continuation;
+            minimum = min;
+        }
+
+        /**
+         * A name keeps the replacement character, as new String(bytes, UTF_8) would, a value is not good anymore
+         */
+        private void malformed() {
+            malformed = true;
+            pending = 0;
+            append('\uFFFD');
+        }
+
+        private void append(char c) {
+            length++;
+            if (c > ' ') {
+                blank = false;
+            }
+            if (c != ' ') {
+                notOnlySpaces = true;
+            }
+            classes &= CharClasses.classesOf(c);
+            if (!keeping) {
+                return;
+            }
+            if (length > limit || (classes & required) != required) {
+                keeping = false;
+                return;
+            }
+            if (kept == chars.length) {
+                char[] grown = new char[(int) Math.min((long) chars.length * 2, Integer.MAX_VALUE - 8)];
+                System.arraycopy(chars, 0, grown, 0, kept);
+                chars = grown;
+            }
+            chars[kept++] = c;
+        }
+
+        /**
+         * @return the reason why the value is not good when it is known without the whole value, otherwise null
+         */
+        ErrorCode error(CompiledRule rule, int maxValueLength) {
+            if (rule == null) {
+                return ErrorCode.NO_RULE;
+            }
+            if (malformed) {
+                return ErrorCode.MALFORMED;
+            }
+            if (keeping) {
+                return null;
+            }
+            if (length > maxValueLength) {
+                return ErrorCode.TOO_LONG;
+            }
+            return rule.check(length, blank, notOnlySpaces, classes);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, kept);
+        }
+    }
+
+    /**
+     * The bytes of the body, one at a time, a byte can be read again once
+     */
+    private abstract static class Source {
+        private int last = END;
+        private boolean back;
+
+        final int next() throws IOException {
+            if (back) {
+                back = false;
+                return last;
+            }
+            last = read();
+            return last;
+        }
+
+        final void back() {
+            back = true;
+        }
+
+        /**
+         * @return the next byte as 0..255, END at the end of the body
+         */
+        abstract int read() throws IOException;
+    }
+
+    private static final class BufferSource extends Source {
+        private final ByteBuffer buffer;
+
+        BufferSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : END;
+        }
+    }
+
+    private static final class StreamSource extends Source {
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int size;
+
+        StreamSource(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        int read() throws IOException {
+            if (position == size) {
+                size = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (size <= 0) {
+                    size = 0;
+                    return END;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package net.funambolo;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Looks up many values with a single call, ex: one query with an IN clause or one request to a
+ * catalog service. It is given by the application and used by the rules built with
+ * CustomRule.mustExist and CustomRule.mustNotExist.
+ *
+ * Example of usage
+ * LookupResolver usernames = keys -> CompletableFuture.supplyAsync(() -> dao.findExistingUsernames(keys), executor);
+ */
+public interface LookupResolver {
+
+    /**
+     * @param keys the distinct values to look up, the set must not be modified
+     * @return a future completed with the keys that exist, an empty set when none exists, never null;
+     * it can be completed by any thread
+     */
+    CompletableFuture<Set<String>> findExisting(Set<String> keys);
+}
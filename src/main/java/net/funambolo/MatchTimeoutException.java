@@ -0,0 +1,12 @@
+package net.funambolo;
+
+/**
+ * Thrown by XssSanitizer.strip when the matching of a value goes beyond its deadline.
+ */
+public class MatchTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public MatchTimeoutException() {
+        super("The matching of the value went beyond its deadline");
+    }
+}
@@ -0,0 +1,262 @@
+package net.funambolo;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads newline delimited JSON one record at a time: every line contains a flat JSON object whose
+ * values are strings, numbers, booleans or null.
+ *
+ * Numbers and booleans are given back with the same text they have in the JSON, ex: 12.50 or true,
+ * a null value is given back as null, as a field that has not been sent. Empty lines are skipped.
+ *
+ * A line longer than the maximum record length stops the reading with an IllegalArgumentException
+ * as a malformed one, the line is read a character at a time so it is never kept in memory whole.
+ *
+ * Example
+ * {"name": "Fabio", "age": 40, "privacy": true}
+ */
+public final class NdjsonRecordReader implements Iterator<Map<String, String>>, Closeable {
+    public static final int DEFAULT_MAX_RECORD_LENGTH = 1 << 20;
+
+    private final BufferedReader reader;
+    private final int maxRecordLength;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder lineText = new StringBuilder();
+    private long lineNumber;
+    private String line;
+    private int pos;
+    private Map<String, String> next;
+
+    public NdjsonRecordReader(Reader reader) {
+        this(reader, DEFAULT_MAX_RECORD_LENGTH);
+    }
+
+    /**
+     * @param reader the NDJSON text
+     * @param maxRecordLength how many characters a line can be long, the line break excluded
+     */
+    public NdjsonRecordReader(Reader reader, int maxRecordLength) {
+        if (maxRecordLength <= 0) {
+            throw new IllegalArgumentException("The maximum record length must be positive");
+        }
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                do {
+                    line = readLine();
+                    lineNumber++;
+                    if (line == null) {
+                        return false;
+                    }
+                    pos = 0;
+                    skipSpaces();
+                } while (pos == line.length());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            next = parseObject();
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<String, String> out = next;
+        next = null;
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * As BufferedReader.readLine, a line ends at \n, \r or \r\n, but it can not grow past the maximum
+     *
+     * @return the next line, or null at the end of the input
+     */
+    private String readLine() throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        lineText.setLength(0);
+        while (c != '\n' && c != '\r' && c != -1) {
+            if (lineText.length() == maxRecordLength) {
+                throw new IllegalArgumentException("The JSON line " + (lineNumber + 1) + " is longer than " + maxRecordLength + " characters");
+            }
+            lineText.append((char) c);
+            c = reader.read();
+        }
+        if (c == '\r') {
+            reader.mark(1);
+            if (reader.read() != '\n') {
+                reader.reset();
+            }
+        }
+        return lineText.toString();
+    }
+
+    private Map<String, String> parseObject() {
+        Map<String, String> record = new HashMap<>();
+        expect('{');
+        skipSpaces();
+        if (peek() == '}') {
+            pos++;
+        } else {
+            while (true) {
+                skipSpaces();
+                String key = parseString();
+                skipSpaces();
+                expect(':');
+                skipSpaces();
+                record.put(key, parseValue());
+                skipSpaces();
+                char c = peek();
+                pos++;
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw malformed("expected , or }");
+                }
+            }
+        }
+        skipSpaces();
+        if (pos != line.length()) {
+            throw malformed("unexpected text after the object");
+        }
+        return record;
+    }
+
+    private String parseValue() {
+        char c = peek();
+        if (c == '"') {
+            return parseString();
+        }
+        if (c == '{' || c == '[') {
+            throw malformed("nested objects and arrays are not supported");
+        }
+        if (line.startsWith("null", pos)) {
+            pos += 4;
+            return null;
+        }
+        if (line.startsWith("true", pos)) {
+            pos += 4;
+            return "true";
+        }
+        if (line.startsWith("false", pos)) {
+            pos += 5;
+            return "false";
+        }
+        int start = pos;
+        while (pos < line.length() && isNumberChar(line.charAt(pos))) {
+            pos++;
+        }
+        if (start == pos) {
+            throw malformed("unexpected value");
+        }
+        return line.substring(start, pos);
+    }
+
+    private String parseString() {
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            char c = peek();
+            pos++;
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            char escaped = peek();
+            pos++;
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    text.append(escaped);
+                    break;
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > line.length()) {
+                        throw malformed("truncated unicode escape");
+                    }
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(line.charAt(pos++), 16);
+                        if (digit < 0) {
+                            throw malformed("invalid unicode escape");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    text.append((char) code);
+                    break;
+                default:
+                    throw malformed("invalid escape");
+            }
+        }
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw malformed("expected " + c);
+        }
+        pos++;
+    }
+
+    private char peek() {
+        if (pos >= line.length()) {
+            throw malformed("unexpected end of line");
+        }
+        return line.charAt(pos);
+    }
+
+    private void skipSpaces() {
+        while (pos < line.length() && (line.charAt(pos) == ' ' || line.charAt(pos) == '\t' || line.charAt(pos) == '\r')) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("Malformed JSON at line " + lineNumber + ", column " + (pos + 1) + ": " + reason);
+    }
+}
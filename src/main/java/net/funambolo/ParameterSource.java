@@ -0,0 +1,46 @@
+package net.funambolo;
+
+import java.util.Map;
+
+/**
+ * Read only access to the parameters of a request, read in place by the Validator.
+ *
+ * The methods follow the names of the servlet API, a parameter can have many values, ex: a multiple
+ * select, and a null or missing value is read as an empty String, as WashingMachine.setValues does,
+ * but only when it is read, without rewriting anything.
+ *
+ * Example of usage
+ * ValidationResult result = validator.validate(ParameterSource.of(request.getParameterMap()), ValidationMode.COLLECT_ALL);
+ */
+public interface ParameterSource {
+
+    /**
+     * @return the names of the received parameters
+     */
+    Iterable<String> getParameterNames();
+
+    /**
+     * @return the values of the parameter, null or an empty array are read as a single empty String
+     */
+    String[] getParameterValues(String name);
+
+    /**
+     * @param parameters parameter name -> values, as given by ServletRequest.getParameterMap, the map is not copied
+     */
+    static ParameterSource of(final Map<String, String[]> parameters) {
+        if (parameters == null) {
+            throw new IllegalArgumentException("The parameters can not be null");
+        }
+        return new ParameterSource() {
+            @Override
+            public Iterable<String> getParameterNames() {
+                return parameters.keySet();
+            }
+
+            @Override
+            public String[] getParameterValues(String name) {
+                return parameters.get(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package net.funambolo;
+
+import java.util.Map;
+
+/**
+ * Receives the records validated by a StreamingValidator, one at a time.
+ */
+public interface RecordSink {
+
+    /**
+     * @param row the number of the record in the source, starting from 1
+     * @param record the record as it has been read from the source
+     * @param result the result of the validation, with the clean values or the errors
+     * @throws Exception stops the streaming, the exception is given back to the caller
+     */
+    void accept(long row, Map<String, String> record, ValidationResult result) throws Exception;
+}
@@ -0,0 +1,221 @@
+package net.funambolo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable set of compiled rules, one for each field of a form.
+ *
+ * A RuleSet is meant to be compiled once, for example when the application starts, and then
+ * given to as many WashingMachine instances as needed with setRuleSet.
+ *
+ * Every field gets an ordinal, from 0 to size() - 1, in the iteration order of the map the rules
+ * come from. A ValidationResult keeps its values in arrays indexed by these ordinals, and callers
+ * that know the fields up front can resolve the ordinals once with ordinalOf and validate arrays of
+ * values with Validator.validate(String[]).
+ *
+ * The field names are also kept sorted, so that all the fields starting with a prefix, like a group
+ * of checkboxes from "checkbox01" to "checkbox400", are found with two binary searches.
+ *
+ * Example of usage
+ * HashMap<String, String> rules = new HashMap<String, String>();
+ * rules.put("name", "required|alphanumerical|maxlen,250");
+ * RuleSet ruleSet = RuleSet.compile(rules);
+ */
+public final class RuleSet {
+    static final RuleSet EMPTY = compile(Collections.<String, String>emptyMap());
+
+    private final Map<String, CompiledRule> rules;
+    private final String[] fields;
+    private final CompiledRule[] compiled;
+    private final boolean typed;
+
+    // open addressing table: field name -> ordinal, the null field name has its own slot
+    private final String[] slotKeys;
+    private final int[] slotOrdinals;
+    private final int nullOrdinal;
+
+    // ordinals of the not null field names, sorted by field name
+    private final int[] sorted;
+
+    private RuleSet(Map<String, CompiledRule> rules) {
+        this.rules = Collections.unmodifiableMap(rules);
+        int size = rules.size();
+        this.fields = new String[size];
+        this.compiled = new CompiledRule[size];
+
+        int capacity = Integer.highestOneBit(Math.max(4, size * 2 - 1)) << 1;
+        this.slotKeys = new String[capacity];
+        this.slotOrdinals = new int[capacity];
+        int nullField = -1;
+        boolean anyTyped = false;
+        int ordinal = 0;
+        for (Map.Entry<String, CompiledRule> entry : rules.entrySet()) {
+            fields[ordinal] = entry.getKey();
+            compiled[ordinal] = entry.getValue();
+            anyTyped |= entry.getValue() != null && entry.getValue().getType() != ValueType.NONE;
+            if (entry.getKey() == null) {
+                nullField = ordinal;
+            } else {
+                int slot = spread(entry.getKey().hashCode()) & (capacity - 1);
+                while (slotKeys[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                slotKeys[slot] = entry.getKey();
+                slotOrdinals[slot] = ordinal;
+            }
+            ordinal++;
+        }
+        this.nullOrdinal = nullField;
+        this.typed = anyTyped;
+        this.sorted = sortByName(fields, nullField);
+    }
+
+    private static int[] sortByName(final String[] fields, int nullField) {
+        Integer[] boxed = new Integer[nullField < 0 ? fields.length : fields.length - 1];
+        int n = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (i != nullField) {
+                boxed[n++] = i;
+            }
+        }
+        Arrays.sort(boxed, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return fields[a].compareTo(fields[b]);
+            }
+        });
+        int[] out = new int[boxed.length];
+        for (int i = 0; i < boxed.length; i++) {
+            out[i] = boxed[i];
+        }
+        return out;
+    }
+
+    /**
+     * Compile every rule of the map, fields having the same rule string share the same CompiledRule
+     *
+     * @param rules field name -> rule string
+     * @return the compiled rule set
+     */
+    public static RuleSet compile(Map<String, String> rules) {
+        Map<String, CompiledRule> byRule = new HashMap<>();
+        Map<String, CompiledRule> compiled = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : rules.entrySet()) {
+            CompiledRule rule = byRule.get(entry.getValue());
+            if (rule == null && entry.getValue() != null) {
+                rule = CompiledRule.compile(entry.getValue());
+                byRule.put(entry.getValue(), rule);
+            }
+            compiled.put(entry.getKey(), rule);
+        }
+        return new RuleSet(compiled);
+    }
+
+    /**
+     * @param field the name of the field
+     * @return the compiled rule of the field, null if no rule has been defined for it
+     */
+    public CompiledRule get(String field) {
+        int ordinal = ordinalOf(field);
+        return ordinal < 0 ? null : compiled[ordinal];
+    }
+
+    /**
+     * @param field the name of the field
+     * @return the ordinal of the field, -1 if the field is not part of the rule set
+     */
+    public int ordinalOf(String field) {
+        if (field == null) {
+            return nullOrdinal;
+        }
+        int mask = slotKeys.length - 1;
+        int slot = spread(field.hashCode()) & mask;
+        String key;
+        while ((key = slotKeys[slot]) != null) {
+            if (key == field || key.equals(field)) {
+                return slotOrdinals[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position, in sorted order, of the first field name starting with the prefix
+     */
+    int prefixStart(String prefix) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fields[sorted[mid]].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the position, in sorted order, after the last field name starting with the prefix
+     */
+    int prefixEnd(String prefix, int start) {
+        int low = start;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fields[sorted[mid]].startsWith(prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the ordinal of the field at the given position in sorted order
+     */
+    int sortedOrdinal(int position) {
+        return sorted[position];
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return the name of the field with the given ordinal
+     */
+    public String fieldAt(int ordinal) {
+        return fields[ordinal];
+    }
+
+    /**
+     * @return the compiled rule of the field with the given ordinal, null if no rule has been defined for it
+     */
+    public CompiledRule ruleAt(int ordinal) {
+        return compiled[ordinal];
+    }
+
+    /**
+     * @return true if at least one rule gives a type to its values
+     */
+    boolean hasTypedFields() {
+        return typed;
+    }
+
+    public Map<String, CompiledRule> getRules() {
+        return rules;
+    }
+
+    public int size() {
+        return fields.length;
+    }
+}
@@ -0,0 +1,75 @@
+package net.funambolo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe cache of compiled RuleSets, for forms whose rules are built at runtime, ex: the custom
+ * fields of each tenant, so they can not all be compiled when the application starts.
+ *
+ * Rule maps are compared by content: two different maps with the same fields and rules give back the
+ * same RuleSet, and a rule map is parsed only the first time it is seen. The cache keeps at most
+ * maxSize rule sets, evicting the ones not used recently.
+ *
+ * Example of usage
+ * private static final RuleSetCache RULES = new RuleSetCache(10000);
+ * ...
+ * WashingMachine wm = new WashingMachine();
+ * wm.setValues(values);
+ * wm.setRules(tenantRules, RULES);
+ */
+public final class RuleSetCache {
+    private final BoundedCache<Map<String, String>, RuleSet> cache;
+
+    public RuleSetCache(int maxSize) {
+        this.cache = new BoundedCache<>(maxSize);
+    }
+
+    /**
+     * @param rules field name -> rule string, the map is copied when it is compiled, later changes are not seen by the cache
+     * @return the compiled rule set, from the cache if the same rules have already been compiled
+     */
+    public RuleSet compile(Map<String, String> rules) {
+        RuleSet ruleSet = cache.get(rules);
+        if (ruleSet != null) {
+            return ruleSet;
+        }
+        // compiled from the copy, so the rule set is the one of its key even if the map changes meanwhile
+        Map<String, String> key = Collections.unmodifiableMap(new HashMap<>(rules));
+        return cache.put(key, RuleSet.compile(key));
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    /**
+     * @return hits / (hits + misses), 0 if the cache has never been used
+     */
+    public double getHitRate() {
+        long hits = cache.getHits();
+        long total = hits + cache.getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,171 @@
+package net.funambolo;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Validates a stream of records that does not fit in memory, ex: a large CSV or NDJSON import.
+ *
+ * A reader thread takes the records from the source and puts them in a bounded buffer, the calling
+ * thread validates them and gives each one to the accepted or to the rejected sink. Only the records
+ * in the buffer are kept in memory, so memory usage does not depend on the size of the input.
+ *
+ * Example of usage
+ * StreamingValidator streaming = new StreamingValidator(Validator.compile(rules), 1024);
+ * try (CsvRecordReader csv = new CsvRecordReader(reader)) {
+ *     StreamingValidator.Summary summary = streaming.validate(csv, acceptedSink, rejectedSink);
+ * }
+ */
+public final class StreamingValidator {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    // marks the end of the source in the buffer
+    private static final Map<String, String> END = new HashMap<>();
+    // how long a stopped streaming waits for the reader thread to end
+    private static final long READER_JOIN_MILLIS = 1000;
+
+    private final Validator validator;
+    private final int bufferSize;
+    private final ValidationMode mode;
+
+    public StreamingValidator(Validator validator) {
+        this(validator, DEFAULT_BUFFER_SIZE, ValidationMode.COLLECT_ALL);
+    }
+
+    public StreamingValidator(Validator validator, int bufferSize) {
+        this(validator, bufferSize, ValidationMode.COLLECT_ALL);
+    }
+
+    /**
+     * @param validator the validator applied to every record
+     * @param bufferSize how many records can be read ahead of the validation
+     * @param mode the validation mode, FAIL_FAST when the errors of the rejected records are not needed
+     */
+    public StreamingValidator(Validator validator, int bufferSize, ValidationMode mode) {
+        if (validator == null || mode == null) {
+            throw new IllegalArgumentException("The validator and the mode can not be null");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The buffer size must be positive");
+        }
+        this.validator = validator;
+        this.bufferSize = bufferSize;
+        this.mode = mode;
+    }
+
+    /**
+     * Validate every record of the source, the method returns when the source is exhausted.
+     * If the source or a sink throws an exception the streaming stops and the exception is thrown.
+     *
+     * When a sink stops the streaming the reader thread is interrupted, but a read blocked on a socket
+     * or a pipe may not see the interrupt: the method waits for the reader only READER_JOIN_MILLIS, and
+     * the reader thread, a daemon, may outlive the call until its read returns. Close the source after
+     * the call, as in the example, to make that read end.
+     *
+     * @param source the records, ex: a CsvRecordReader or a NdjsonRecordReader
+     * @param accepted receives the records that are good
+     * @param rejected receives the records that are not good
+     * @return how many records have been accepted and rejected
+     */
+    public Summary validate(Iterator<? extends Map<String, String>> source, RecordSink accepted, RecordSink rejected) throws Exception {
+        BlockingQueue<Map<String, String>> buffer = new ArrayBlockingQueue<>(bufferSize);
+        Producer producer = new Producer(source, buffer);
+        Thread thread = new Thread(producer, "washingmachine-stream-reader");
+        thread.setDaemon(true);
+        thread.start();
+
+        long acceptedCount = 0;
+        long rejectedCount = 0;
+        try {
+            long row = 0;
+            Map<String, String> record;
+            while ((record = buffer.take()) != END) {
+                row++;
+                ValidationResult result = validator.validate(record, mode);
+                if (result.isGood()) {
+                    accepted.accept(row, record, result);
+                    acceptedCount++;
+                } else {
+                    rejected.accept(row, record, result);
+                    rejectedCount++;
+                }
+            }
+        } finally {
+            // when a sink fails the reader must not stay blocked on a full buffer, and a read that can
+            // not be interrupted must not keep the caller waiting forever
+            thread.interrupt();
+            thread.join(READER_JOIN_MILLIS);
+        }
+        Throwable failure = producer.failure;
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        }
+        if (failure != null) {
+            // neither an Error nor an Exception, a direct subclass of Throwable
+            throw new IllegalStateException("The reader of the records failed", failure);
+        }
+        return new Summary(acceptedCount, rejectedCount);
+    }
+
+    private static final class Producer implements Runnable {
+        private final Iterator<? extends Map<String, String>> source;
+        private final BlockingQueue<Map<String, String>> buffer;
+        private volatile Throwable failure;
+
+        Producer(Iterator<? extends Map<String, String>> source, BlockingQueue<Map<String, String>> buffer) {
+            this.source = source;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (source.hasNext()) {
+                    buffer.put(source.next());
+                }
+            } catch (InterruptedException e) {
+                // the consumer stopped, nobody is waiting for the end mark
+                return;
+            } catch (Throwable e) {
+                failure = e;
+            }
+            try {
+                buffer.put(END);
+            } catch (InterruptedException e) {
+                // the consumer stopped
+            }
+        }
+    }
+
+    /**
+     * How many records a streaming validation accepted and rejected
+     */
+    public static final class Summary {
+        private final long accepted;
+        private final long rejected;
+
+        Summary(long accepted, long rejected) {
+            this.accepted = accepted;
+            this.rejected = rejected;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getTotal() {
+            return accepted + rejected;
+        }
+    }
+}
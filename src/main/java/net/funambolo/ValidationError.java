@@ -0,0 +1,74 @@
+package net.funambolo;
+
+import java.io.IOException;
+
+/**
+ * A field that is not good: the name of the field, the reason, the bound given in the rule and the
+ * length of the received value.
+ *
+ * The message is built only when it is asked for, with getMessage or appendTo, so a validation that
+ * only needs to know whether the input is good never pays for it.
+ */
+public final class ValidationError {
+    private final String field;
+    private final ErrorCode code;
+    private final String bound;
+    private final int length;
+
+    ValidationError(String field, ErrorCode code, String bound, int length) {
+        this.field = field;
+        this.code = code;
+        this.bound = bound;
+        this.length = length;
+    }
+
+    ValidationError(String field, ErrorCode code) {
+        this(field, code, null, 0);
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public ErrorCode getCode() {
+        return code;
+    }
+
+    /**
+     * @return the bound given in the rule, ex: 250 for maxlen,250, or null if the check has no bound
+     */
+    public String getBound() {
+        return bound;
+    }
+
+    /**
+     * @return the length of the received value
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public String getMessage() {
+        StringBuilder out = new StringBuilder(64);
+        appendTo(out);
+        return out.toString();
+    }
+
+    public void appendTo(StringBuilder out) {
+        try {
+            code.render(out, field, bound, length);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void appendTo(Appendable out) throws IOException {
+        code.render(out, field, bound, length);
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -0,0 +1,188 @@
+package net.funambolo;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters about the validations made by one or more Validators: calls, rejected calls, time spent,
+ * fields rejected by each rule and values rewritten by the XSS sanitizer.
+ *
+ * Counters are LongAdders, so many threads can update them without contention. A Validator without
+ * metrics, the default, pays only a null check, the clock is read only when metrics are enabled.
+ *
+ * Example of usage
+ * ValidationMetrics metrics = new ValidationMetrics();
+ * metrics.register("userForm");
+ * private static final Validator USER_FORM = Validator.compile(rules).withMetrics(metrics);
+ */
+public final class ValidationMetrics implements ValidationMetricsMXBean {
+    private static final int BUCKETS = 64;
+    private static final ErrorCode[] CODES = ErrorCode.values();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder[] latency = adders(BUCKETS);
+    private final LongAdder[] failures = adders(CODES.length);
+    private final LongAdder rewrites = new LongAdder();
+    private final LongAdder sanitizerNanos = new LongAdder();
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] out = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            out[i] = new LongAdder();
+        }
+        return out;
+    }
+
+    /**
+     * Register these metrics in the platform MBean server as net.funambolo:type=ValidationMetrics,name=[name]
+     *
+     * @return the name the metrics have been registered with
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("net.funambolo:type=ValidationMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Unable to register the metrics " + name, e);
+        }
+    }
+
+    void called(ValidationResult result, long elapsedNanos) {
+        calls.increment();
+        if (!result.isGood()) {
+            rejections.increment();
+        }
+        nanos.add(elapsedNanos);
+        latency[BUCKETS - Long.numberOfLeadingZeros(Math.max(1, elapsedNanos))].increment();
+    }
+
+    /**
+     * A call counted as good has been rejected later, ex: by a custom rule
+     */
+    void rejectedAfterCall() {
+        rejections.increment();
+    }
+
+    void failed(ErrorCode code) {
+        failures[code.ordinal()].increment();
+    }
+
+    void sanitized(boolean rewritten, long elapsedNanos) {
+        if (rewritten) {
+            rewrites.increment();
+        }
+        sanitizerNanos.add(elapsedNanos);
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    @Override
+    public long getTotalTimeMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(nanos.sum());
+    }
+
+    @Override
+    public double getMeanTimeMicros() {
+        long n = calls.sum();
+        return n == 0 ? 0 : nanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latencyPercentileMicros(0.50);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latencyPercentileMicros(0.99);
+    }
+
+    /**
+     * @return the upper bound of the histogram bucket holding the given percentile, ex: 0.99
+     */
+    public long latencyPercentileMicros(double percentile) {
+        long[] histogram = getLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return TimeUnit.NANOSECONDS.toMicros(i >= 63 ? Long.MAX_VALUE : 1L << i);
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMicros(Long.MAX_VALUE);
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] out = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            out[i] = latency[i].sum();
+        }
+        return out;
+    }
+
+    @Override
+    public Map<String, Long> getRuleFailures() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (ErrorCode code : CODES) {
+            long count = failures[code.ordinal()].sum();
+            if (count > 0) {
+                out.put(code.name(), count);
+            }
+        }
+        return out;
+    }
+
+    public long getFailures(ErrorCode code) {
+        return failures[code.ordinal()].sum();
+    }
+
+    @Override
+    public long getSanitizerRewrites() {
+        return rewrites.sum();
+    }
+
+    @Override
+    public long getSanitizerTimeMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(sanitizerNanos.sum());
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        rejections.reset();
+        nanos.reset();
+        for (LongAdder adder : latency) {
+            adder.reset();
+        }
+        for (LongAdder adder : failures) {
+            adder.reset();
+        }
+        rewrites.reset();
+        sanitizerNanos.reset();
+    }
+}
@@ -0,0 +1,40 @@
+package net.funambolo;
+
+import java.util.Map;
+
+/**
+ * The JMX view of ValidationMetrics, times are in microseconds.
+ *
+ * It is an MXBean, so a generic JMX console can read every attribute: the map of the rule failures is
+ * seen as a table of key and value rows.
+ */
+public interface ValidationMetricsMXBean {
+
+    long getCalls();
+
+    long getRejections();
+
+    long getTotalTimeMicros();
+
+    double getMeanTimeMicros();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    /**
+     * @return the number of calls by latency, the calls in position i took less than 2^i nanoseconds
+     */
+    long[] getLatencyHistogram();
+
+    /**
+     * @return error code -> number of fields rejected with that code, ex: MAXLEN -> 12
+     */
+    Map<String, Long> getRuleFailures();
+
+    long getSanitizerRewrites();
+
+    long getSanitizerTimeMicros();
+
+    void reset();
+}
@@ -0,0 +1,20 @@
+package net.funambolo;
+
+/**
+ * How much work a validation does when the input is not good.
+ */
+public enum ValidationMode {
+
+    /**
+     * Every field is checked, every error is reported and the good values are cleaned.
+     * This is the behaviour WashingMachine always had.
+     */
+    COLLECT_ALL,
+
+    /**
+     * The validation stops at the first field that is not good, reporting only its error.
+     * The values are cleaned only when all the fields are good, so rejecting an input costs only
+     * the checks made up to the first failure: the values accepted before it are given back blank.
+     */
+    FAIL_FAST
+}
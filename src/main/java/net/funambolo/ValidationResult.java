@@ -0,0 +1,510 @@
+package net.funambolo;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The outcome of a single validation made by a Validator: the verdict, the errors and the
+ * cleaned values. The messages of the errors are built only when they are read.
+ *
+ * Values, errors and typed values of the fields of the RuleSet are kept in flat arrays indexed by the
+ * ordinal of the field, fields that are not part of the RuleSet, which are always errors, are kept
+ * aside. The maps given back by getCleanValues and getCleanValuesWithPattern are built when asked,
+ * getCleanValuesWithPrefix gives back a view over the arrays without copying anything.
+ *
+ * A ValidationResult belongs to the request that created it and it is not meant to be shared
+ * between threads.
+ */
+public final class ValidationResult {
+    private final RuleSet rules;
+
+    // by ordinal, null for the fields that have not been received
+    private final String[] cleanValues;
+    // by ordinal, allocated with the first error
+    private ValidationError[] errors;
+    // by ordinal, CompiledRule.NO_VALUE when there is no typed value
+    private final long[] typedValues;
+    // by ordinal, allocated with the first parameter having many values
+    private String[][] allCleanValues;
+
+    // fields received but not part of the rule set
+    private Map<String, String> unknownValues;
+    private List<ValidationError> unknownErrors;
+
+    private int errorCount;
+    // the System.nanoTime() after which the matching of the values is stopped
+    private long deadline = XssSanitizer.NO_DEADLINE;
+    private HashMap<String, String> cleanValuesMap;
+    private ArrayList<String> errorMessages;
+
+    ValidationResult(RuleSet rules) {
+        this.rules = rules;
+        this.cleanValues = new String[rules.size()];
+        if (rules.hasTypedFields()) {
+            this.typedValues = new long[rules.size()];
+            Arrays.fill(typedValues, CompiledRule.NO_VALUE);
+        } else {
+            this.typedValues = null;
+        }
+    }
+
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    void accept(int ordinal, String cleanValue) {
+        cleanValues[ordinal] = cleanValue;
+        cleanValuesMap = null;
+    }
+
+    void acceptTyped(int ordinal, long typedValue) {
+        typedValues[ordinal] = typedValue;
+    }
+
+    void acceptAll(int ordinal, String[] values) {
+        if (allCleanValues == null) {
+            allCleanValues = new String[cleanValues.length][];
+        }
+        allCleanValues[ordinal] = values;
+        cleanValuesMap = null;
+    }
+
+    String[] allCleanValuesAt(int ordinal) {
+        return allCleanValues == null ? null : allCleanValues[ordinal];
+    }
+
+    void reject(int ordinal, ValidationError error) {
+        cleanValues[ordinal] = "";
+        if (typedValues != null) {
+            typedValues[ordinal] = CompiledRule.NO_VALUE;
+        }
+        if (allCleanValues != null) {
+            allCleanValues[ordinal] = null;
+        }
+        if (errors == null) {
+            errors = new ValidationError[cleanValues.length];
+        }
+        if (errors[ordinal] == null) {
+            errorCount++;
+        }
+        errors[ordinal] = error;
+        // the map may have been read before, ex: while the custom rules of an AsyncValidator were running
+        cleanValuesMap = null;
+        errorMessages = null;
+    }
+
+    /**
+     * A value accepted but never cleaned is not given back, see Validator.finishFailFast
+     */
+    void blank(int ordinal) {
+        cleanValues[ordinal] = "";
+        if (typedValues != null) {
+            typedValues[ordinal] = CompiledRule.NO_VALUE;
+        }
+        if (allCleanValues != null) {
+            allCleanValues[ordinal] = null;
+        }
+        cleanValuesMap = null;
+    }
+
+    /**
+     * Forget the outcome of a field before it is validated again, see Validator.update
+     */
+    void clear(int ordinal) {
+        cleanValues[ordinal] = null;
+        if (typedValues != null) {
+            typedValues[ordinal] = CompiledRule.NO_VALUE;
+        }
+        if (allCleanValues != null) {
+            allCleanValues[ordinal] = null;
+        }
+        if (errors != null && errors[ordinal] != null) {
+            errors[ordinal] = null;
+            errorCount--;
+        }
+        cleanValuesMap = null;
+        errorMessages = null;
+    }
+
+    boolean isUnknown(String field) {
+        return unknownValues != null && unknownValues.containsKey(field);
+    }
+
+    boolean isRejected(int ordinal) {
+        return errors != null && errors[ordinal] != null;
+    }
+
+    RuleSet getRuleSet() {
+        return rules;
+    }
+
+    void rejectUnknown(String field) {
+        if (unknownValues == null) {
+            unknownValues = new LinkedHashMap<>();
+            unknownErrors = new ArrayList<>();
+        }
+        unknownValues.put(field, "");
+        unknownErrors.add(new ValidationError(field, ErrorCode.NO_RULE));
+        errorCount++;
+        cleanValuesMap = null;
+        errorMessages = null;
+    }
+
+    public boolean isGood() {
+        return errorCount == 0;
+    }
+
+    /**
+     * The messages are built the first time they are asked for, a good result builds none. The list can
+     * be modified, as it has always been, ex: to add a message of the application; it is built again,
+     * losing what has been added, only when the validation of a field changes, see Validator.update.
+     *
+     * @return the messages of the errors
+     */
+    public List<String> getErrors() {
+        if (errorMessages == null) {
+            List<ValidationError> list = getValidationErrors();
+            errorMessages = new ArrayList<>(list.size());
+            for (ValidationError error : list) {
+                errorMessages.add(error.getMessage());
+            }
+        }
+        return errorMessages;
+    }
+
+    /**
+     * @return the errors, in the order of the fields of the RuleSet followed by the unknown fields
+     */
+    public List<ValidationError> getValidationErrors() {
+        if (errorCount == 0) {
+            return Collections.emptyList();
+        }
+        List<ValidationError> out = new ArrayList<>(errorCount);
+        if (errors != null) {
+            for (ValidationError error : errors) {
+                if (error != null) {
+                    out.add(error);
+                }
+            }
+        }
+        if (unknownErrors != null) {
+            out.addAll(unknownErrors);
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    /**
+     * @return field name -> clean value for every received field, an empty String for the fields that are not good
+     */
+    public HashMap<String, String> getCleanValues() {
+        if (cleanValuesMap == null) {
+            HashMap<String, String> out = new HashMap<>();
+            for (int i = 0; i < cleanValues.length; i++) {
+                if (cleanValues[i] != null) {
+                    out.put(rules.fieldAt(i), cleanValues[i]);
+                }
+            }
+            if (unknownValues != null) {
+                out.putAll(unknownValues);
+            }
+            cleanValuesMap = out;
+        }
+        return cleanValuesMap;
+    }
+
+    public String getCleanValue(String key) {
+        int ordinal = rules.ordinalOf(key);
+        String value = ordinal >= 0 ? cleanValues[ordinal] : null;
+        return value != null ? value : "";
+    }
+
+    /**
+     * @return the clean value of the field with the given ordinal, null if the field has not been received
+     */
+    public String getCleanValue(int ordinal) {
+        return cleanValues[ordinal];
+    }
+
+    /**
+     * @return every clean value of a parameter with many values, ex: a multiple select, an empty list if the field has not been received
+     */
+    public List<String> getAllCleanValues(String key) {
+        int ordinal = rules.ordinalOf(key);
+        if (ordinal < 0) {
+            return Collections.emptyList();
+        }
+        String[] all = allCleanValuesAt(ordinal);
+        if (all != null) {
+            return Collections.unmodifiableList(Arrays.asList(all));
+        }
+        return cleanValues[ordinal] == null ? Collections.<String>emptyList() : Collections.singletonList(cleanValues[ordinal]);
+    }
+
+    public long getCleanLongValue(String key) {
+        int ordinal = rules.ordinalOf(key);
+        if (ordinal < 0) {
+            return 0;
+        }
+        long typed = typedValue(ordinal);
+        if (typed != CompiledRule.NO_VALUE) {
+            return typed;
+        }
+        if (cleanValues[ordinal] == null) {
+            return 0;
+        }
+        long parsed = CompiledRule.parseLong(cleanValues[ordinal]);
+        return parsed == CompiledRule.NO_VALUE ? 0 : parsed;
+    }
+
+    private long typedValue(int ordinal) {
+        return typedValues == null ? CompiledRule.NO_VALUE : typedValues[ordinal];
+    }
+
+    private long typedValue(String key) {
+        int ordinal = rules.ordinalOf(key);
+        return ordinal < 0 ? CompiledRule.NO_VALUE : typedValue(ordinal);
+    }
+
+    /**
+     * @return true if the rule of the field gives a type to its values and the field has a good, not empty, value
+     */
+    public boolean hasTypedValue(String key) {
+        return typedValue(key) != CompiledRule.NO_VALUE;
+    }
+
+    /**
+     * @return the value of a field with rule integer, minnumeric or maxnumeric, 0 if it is not available
+     */
+    public long getCleanLong(String key) {
+        long typed = typedValue(key);
+        return typed != CompiledRule.NO_VALUE ? typed : 0;
+    }
+
+    public long getCleanLong(int ordinal) {
+        long typed = typedValue(ordinal);
+        return typed != CompiledRule.NO_VALUE ? typed : 0;
+    }
+
+    /**
+     * @return the value of a field with rule boolean, false if it is not available
+     */
+    public boolean getCleanBoolean(String key) {
+        return typedValue(key) == 1;
+    }
+
+    /**
+     * @return the value of a field with rule calendardate or mysqldate packed as yyyymmdd, 0 if it is not available
+     */
+    public int getCleanDate(String key) {
+        long typed = typedValue(key);
+        return typed != CompiledRule.NO_VALUE ? (int) typed : 0;
+    }
+
+    /**
+     * @return the value of a field with rule time as minutes from midnight, -1 if it is not available
+     */
+    public int getCleanTime(String key) {
+        long typed = typedValue(key);
+        return typed != CompiledRule.NO_VALUE ? (int) typed : -1;
+    }
+
+    /**
+     * return all pair [key, value] with a key that contains a certain pattern
+     *
+     * Example if pattern is "checkbox" and key is "checkbox01" the pair key, value will be returned
+     *
+     * @param pattern
+     * @return
+     */
+    public HashMap<String, String> getCleanValuesWithPattern(String pattern) {
+        HashMap<String, String> out = new HashMap<>();
+        for (Map.Entry<String, String> entry : getCleanValues().entrySet()) {
+            if (entry.getKey().contains(pattern)) {
+                out.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * return all pair [key, value] with a key that starts with a certain prefix
+     *
+     * Example if prefix is "checkbox" and key is "checkbox01" the pair key, value will be returned
+     *
+     * The fields are found with the sorted index of the RuleSet and the returned map is a read only
+     * view over this result, nothing is copied. Iteration follows the alphabetical order of the keys.
+     *
+     * @param prefix
+     * @return
+     */
+    public Map<String, String> getCleanValuesWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        int start = rules.prefixStart(prefix);
+        return new PrefixView(prefix, start, rules.prefixEnd(prefix, start));
+    }
+
+    public String getAllErrors() {
+        StringBuilder out = new StringBuilder();
+        appendAllErrors(out, " ");
+        return out.toString();
+    }
+
+    public String getAllErrorsWithBr() {
+        StringBuilder out = new StringBuilder();
+        appendAllErrors(out, "<br />");
+        return out.toString();
+    }
+
+    /**
+     * Write the message of every error followed by the separator, without building intermediate strings
+     */
+    public void appendAllErrors(StringBuilder out, String separator) {
+        for (ValidationError er : getValidationErrors()) {
+            er.appendTo(out);
+            out.append(separator);
+        }
+    }
+
+    public void appendAllErrors(Appendable out, String separator) throws IOException {
+        for (ValidationError er : getValidationErrors()) {
+            er.appendTo(out);
+            out.append(separator);
+        }
+    }
+
+    private final class PrefixView extends AbstractMap<String, String> {
+        private final String prefix;
+        private final int start;
+        private final int end;
+
+        PrefixView(String prefix, int start, int end) {
+            this.prefix = prefix;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String get(Object key) {
+            if (!(key instanceof String) || !((String) key).startsWith(prefix)) {
+                return null;
+            }
+            int ordinal = rules.ordinalOf((String) key);
+            if (ordinal >= 0) {
+                return cleanValues[ordinal];
+            }
+            return unknownValues == null ? null : unknownValues.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        /**
+         * Counted at every call, as the other methods the view follows the changes of the result, see Validator.update
+         */
+        @Override
+        public int size() {
+            int n = 0;
+            for (int i = start; i < end; i++) {
+                if (cleanValues[rules.sortedOrdinal(i)] != null) {
+                    n++;
+                }
+            }
+            if (unknownValues != null) {
+                for (String field : unknownValues.keySet()) {
+                    if (field != null && field.startsWith(prefix)) {
+                        n++;
+                    }
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new PrefixIterator(prefix, start, end);
+                }
+
+                @Override
+                public int size() {
+                    return PrefixView.this.size();
+                }
+            };
+        }
+    }
+
+    private final class PrefixIterator implements Iterator<Map.Entry<String, String>> {
+        private final String prefix;
+        private final int end;
+        private final Iterator<Map.Entry<String, String>> unknown;
+        private int position;
+        private Map.Entry<String, String> next;
+
+        PrefixIterator(String prefix, int start, int end) {
+            this.prefix = prefix;
+            this.end = end;
+            this.position = start;
+            this.unknown = unknownValues == null ? null : unknownValues.entrySet().iterator();
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (position < end) {
+                int ordinal = rules.sortedOrdinal(position++);
+                if (cleanValues[ordinal] != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(rules.fieldAt(ordinal), cleanValues[ordinal]);
+                    return;
+                }
+            }
+            while (unknown != null && unknown.hasNext()) {
+                Map.Entry<String, String> entry = unknown.next();
+                if (entry.getKey() != null && entry.getKey().startsWith(prefix)) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(entry);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, String> out = next;
+            advance();
+            return out;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package net.funambolo;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable and thread-safe validator built from a RuleSet.
+ *
+ * A Validator holds no state related to a single request, so the same instance can be shared by all
+ * the threads validating the same form. Every call to validate gives back a new ValidationResult
+ * with the verdict, the errors and the cleaned values.
+ *
+ * Example of usage
+ * private static final Validator USER_FORM = Validator.compile(rules);
+ * ...
+ * ValidationResult result = USER_FORM.validate(values);
+ * if (result.isGood()) { ... result.getCleanValue("name") ... }
+ *
+ * withMetrics gives back a Validator that records its calls in a ValidationMetrics, see ValidationMetrics.
+ *
+ * Against hostile input, withMaxValueLength rejects the values longer than a limit before any check
+ * runs, and withMatchTimeBudget bounds the time a call can spend matching regular expressions: once
+ * the budget is spent the field being matched is rejected with ErrorCode.TIMEOUT.
+ */
+public final class Validator {
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    private final RuleSet rules;
+    // null when metrics are disabled
+    private final ValidationMetrics metrics;
+    private final int maxValueLength;
+    private final String maxValueLengthText;
+    // 0 when matching has no time budget
+    private final long matchBudgetNanos;
+    // by ordinal, null when the checks run in the cost order of their rule
+    private final AdaptiveCheckOrder[] adaptive;
+    // null when every value is checked and cleaned
+    private final VerdictCache verdicts;
+
+    public Validator(RuleSet rules) {
+        this(rules, null, NO_LIMIT, 0, null, null);
+    }
+
+    private Validator(RuleSet rules, ValidationMetrics metrics, int maxValueLength, long matchBudgetNanos, AdaptiveCheckOrder[] adaptive,
+                      VerdictCache verdicts) {
+        if (rules == null) {
+            throw new IllegalArgumentException("The rule set can not be null");
+        }
+        this.rules = rules;
+        this.metrics = metrics;
+        this.maxValueLength = maxValueLength;
+        this.maxValueLengthText = String.valueOf(maxValueLength);
+        this.matchBudgetNanos = matchBudgetNanos;
+        this.adaptive = adaptive;
+        this.verdicts = verdicts;
+    }
+
+    /**
+     * @param rules field name -> rule string, see WashingMachine for the rules syntax
+     */
+    public static Validator compile(Map<String, String> rules) {
+        return new Validator(RuleSet.compile(rules));
+    }
+
+    public RuleSet getRuleSet() {
+        return rules;
+    }
+
+    /**
+     * @param metrics where to record calls, times and rejections, null to disable the metrics
+     * @return a Validator with the same rules recording its calls in metrics
+     */
+    public Validator withMetrics(ValidationMetrics metrics) {
+        return metrics == this.metrics ? this : new Validator(rules, metrics, maxValueLength, matchBudgetNanos, adaptive, verdicts);
+    }
+
+    /**
+     * @param maxValueLength the maximum length of a value, longer values are rejected with ErrorCode.TOO_LONG
+     *                       before any check, NO_LIMIT for no limit
+     * @return a Validator with the same rules and the given limit
+     */
+    public Validator withMaxValueLength(int maxValueLength) {
+        if (maxValueLength < 0) {
+            throw new IllegalArgumentException("The maximum length of a value can not be negative: " + maxValueLength);
+        }
+        return maxValueLength == this.maxValueLength ? this : new Validator(rules, metrics, maxValueLength, matchBudgetNanos, adaptive, verdicts);
+    }
+
+    /**
+     * @param budget the time a call to validate can spend, from its start, before the matching of a
+     *               value is stopped and the field rejected with ErrorCode.TIMEOUT, 0 for no budget
+     * @return a Validator with the same rules and the given budget
+     */
+    public Validator withMatchTimeBudget(long budget, TimeUnit unit) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("The time budget can not be negative: " + budget);
+        }
+        long nanos = unit.toNanos(budget);
+        return nanos == matchBudgetNanos ? this : new Validator(rules, metrics, maxValueLength, nanos, adaptive, verdicts);
+    }
+
+    /**
+     * The checks of every rule run from the cheapest, see CompiledRule.check. With the adaptive order
+     * the Validator also counts how many values each check rejects and every few thousand values it
+     * sorts the checks again by cost and rejection rate, so the bad values of this form are rejected
+     * by the cheapest check that catches them. The errors reported do not change.
+     *
+     * The counters belong to the returned Validator and to the ones derived from it.
+     *
+     * @return a Validator with the same rules and the adaptive order of the checks
+     */
+    public Validator withAdaptiveCheckOrder() {
+        if (adaptive != null) {
+            return this;
+        }
+        Map<CompiledRule, AdaptiveCheckOrder> byRule = new IdentityHashMap<>();
+        AdaptiveCheckOrder[] orders = new AdaptiveCheckOrder[rules.size()];
+        for (int ordinal = 0; ordinal < rules.size(); ordinal++) {
+            CompiledRule rule = rules.ruleAt(ordinal);
+            if (rule == null) {
+                continue;
+            }
+            AdaptiveCheckOrder order = byRule.get(rule);
+            if (order == null) {
+                order = new AdaptiveCheckOrder(rule);
+                byRule.put(rule, order);
+            }
+            orders[ordinal] = order;
+        }
+        return new Validator(rules, metrics, maxValueLength, matchBudgetNanos, orders, verdicts);
+    }
+
+    /**
+     * @return true if the order of the checks adapts to the received values, see withAdaptiveCheckOrder
+     */
+    public boolean isAdaptive() {
+        return adaptive != null;
+    }
+
+    /**
+     * The outcome of a rule on a short value, ErrorCode, typed value and cleaned value, is taken from
+     * the cache when the same rule has already seen the same value, see VerdictCache.
+     *
+     * @param verdicts the cache, it can be shared by many Validators, null to check every value
+     * @return a Validator with the same rules using the cache
+     */
+    public Validator withVerdictCache(VerdictCache verdicts) {
+        return verdicts == this.verdicts ? this : new Validator(rules, metrics, maxValueLength, matchBudgetNanos, adaptive, verdicts);
+    }
+
+    public VerdictCache getVerdictCache() {
+        return verdicts;
+    }
+
+    public ValidationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Validate every value against the rule of its field, collecting all the errors.
+     * A null value means the field has not been sent back, which is allowed only for checkboxes.
+     *
+     * @param values field name -> received value, the map is not modified
+     * @return the result of the validation
+     */
+    public ValidationResult validate(Map<String, String> values) {
+        return validate(values, ValidationMode.COLLECT_ALL);
+    }
+
+    /**
+     * Validate every value against the rule of its field.
+     * A null value means the field has not been sent back, which is allowed only for checkboxes.
+     *
+     * @param values field name -> received value, the map is not modified
+     * @param mode COLLECT_ALL to check every field, FAIL_FAST to stop at the first field that is not good
+     * @return the result of the validation
+     */
+    public ValidationResult validate(Map<String, String> values, ValidationMode mode) {
+        if (metrics == null) {
+            return validateMap(values, mode);
+        }
+        long start = System.nanoTime();
+        ValidationResult result = validateMap(values, mode);
+        metrics.called(result, System.nanoTime() - start);
+        return result;
+    }
+
+    private ValidationResult validateMap(Map<String, String> values, ValidationMode mode) {
+        ValidationResult result = newResult();
+        boolean failFast = mode == ValidationMode.FAIL_FAST;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            int ordinal = rules.ordinalOf(entry.getKey());
+            if (ordinal < 0) {
+                rejectUnknown(result, entry.getKey());
+                if (failFast) {
+                    break;
+                }
+            } else if (!validateField(ordinal, entry.getValue(), result, !failFast) && failFast) {
+                break;
+            }
+        }
+        if (failFast) {
+            finishFailFast(result);
+        }
+        return result;
+    }
+
+    /**
+     * Validate again only the fields that changed since a previous validation, ex: a wizard or an
+     * autosave sending back the whole form every few seconds. The fields in changedValues are checked
+     * and cleaned as validate(Map) does, the clean values and the errors of the other fields are kept
+     * as they are, so the cost depends on the number of changed fields and not on the size of the form.
+     *
+     * @param result a result of validate(Map) or validate(ParameterSource, mode) with ValidationMode.COLLECT_ALL
+     *               given by a Validator with the same RuleSet, it is updated in place
+     * @param changedValues field name -> new value, the map is not modified
+     * @return the updated result
+     */
+    public ValidationResult update(ValidationResult result, Map<String, String> changedValues) {
+        if (result.getRuleSet() != rules) {
+            throw new IllegalArgumentException("The result has not been given by a Validator with the same rule set");
+        }
+        if (metrics == null) {
+            return updateMap(result, changedValues);
+        }
+        long start = System.nanoTime();
+        updateMap(result, changedValues);
+        metrics.called(result, System.nanoTime() - start);
+        return result;
+    }
+
+    private ValidationResult updateMap(ValidationResult result, Map<String, String> changedValues) {
+        if (matchBudgetNanos > 0) {
+            result.setDeadline(System.nanoTime() + matchBudgetNanos);
+        }
+        for (Map.Entry<String, String> entry : changedValues.entrySet()) {
+            int ordinal = rules.ordinalOf(entry.getKey());
+            if (ordinal < 0) {
+                if (!result.isUnknown(entry.getKey())) {
+                    rejectUnknown(result, entry.getKey());
+                }
+            } else {
+                result.clear(ordinal);
+                validateField(ordinal, entry.getValue(), result, true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Validate the parameters of a request in place, without copying them in a map.
+     * Every value of a parameter with many values must be good, a null value is read as an empty String.
+     *
+     * @param parameters the received parameters, they are not modified
+     * @param mode COLLECT_ALL to check every field, FAIL_FAST to stop at the first field that is not good
+     * @return the result of the validation
+     */
+    public ValidationResult validate(ParameterSource parameters, ValidationMode mode) {
+        if (metrics == null) {
+            return validateParameters(parameters, mode);
+        }
+        long start = System.nanoTime();
+        ValidationResult result = validateParameters(parameters, mode);
+        metrics.called(result, System.nanoTime() - start);
+        return result;
+    }
+
+    private ValidationResult validateParameters(ParameterSource parameters, ValidationMode mode) {
+        ValidationResult result = newResult();
+        boolean failFast = mode == ValidationMode.FAIL_FAST;
+        for (String name : parameters.getParameterNames()) {
+            int ordinal = rules.ordinalOf(name);
+            if (ordinal < 0) {
+                rejectUnknown(result, name);
+                if (failFast) {
+                    break;
+                }
+            } else if (!validateValues(ordinal, parameters.getParameterValues(name), result, !failFast) && failFast) {
+                break;
+            }
+        }
+        if (failFast) {
+            finishFailFast(result);
+        }
+        return result;
+    }
+
+    /**
+     * Validate the values of the fields by ordinal, see RuleSet.ordinalOf, with no lookup by field name.
+     * Callers that know the fields up front, ex: the columns of a CSV, can resolve the ordinals once
+     * and validate each record as an array.
+     *
+     * @param values the value of each field at the ordinal of the field, null for the fields that have not been received
+     * @param mode COLLECT_ALL to check every field, FAIL_FAST to stop at the first field that is not good
+     * @return the result of the validation
+     */
+    public ValidationResult validate(String[] values, ValidationMode mode) {
+        if (values.length != rules.size()) {
+            throw new IllegalArgumentException("Expected " + rules.size() + " values, received " + values.length);
+        }
+        if (metrics == null) {
+            return validateArray(values, mode);
+        }
+        long start = System.nanoTime();
+        ValidationResult result = validateArray(values, mode);
+        metrics.called(result, System.nanoTime() - start);
+        return result;
+    }
+
+    private ValidationResult validateArray(String[] values, ValidationMode mode) {
+        ValidationResult result = newResult();
+        boolean failFast = mode == ValidationMode.FAIL_FAST;
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            if (values[ordinal] != null && !validateField(ordinal, values[ordinal], result, !failFast) && failFast) {
+                break;
+            }
+        }
+        if (failFast) {
+            finishFailFast(result);
+        }
+        return result;
+    }
+
+    ValidationResult newResult() {
+        ValidationResult result = new ValidationResult(rules);
+        if (matchBudgetNanos > 0) {
+            result.setDeadline(System.nanoTime() + matchBudgetNanos);
+        }
+        return result;
+    }
+
+    /**
+     * Check the value of a field and store in the result its clean value or its error
+     *
+     * @param sanitize false to store the trimmed value without removing the scripts
+     * @return true if the value is good
+     */
+    private boolean validateField(int ordinal, String value, ValidationResult result, boolean sanitize) {
+        CompiledRule rule = rules.ruleAt(ordinal);
+        if (rule == null) {
+            reject(result, ordinal, new ValidationError(rules.fieldAt(ordinal), ErrorCode.NO_RULE));
+            return false;
+        }
+        if (value == null) {
+            // a checkbox could send back a null field
+            if (rule.isCheckbox()) {
+                value = rule.missingCheckboxValue();
+            } else {
+                reject(result, ordinal, new ValidationError(rules.fieldAt(ordinal), ErrorCode.NOT_DEFINED));
+                return false;
+            }
+        }
+        if (verdicts != null && verdicts.isCacheable(value) && value.length() <= maxValueLength) {
+            return validateCached(ordinal, rule, value, result, sanitize);
+        }
+        ErrorCode code = check(ordinal, rule, value);
+        if (code != null) {
+            reject(result, ordinal, error(rule, ordinal, code, value));
+            return false;
+        }
+        if (rule.getType() != ValueType.NONE) {
+            long typed = rule.typedValue(value);
+            if (typed != CompiledRule.NO_VALUE) {
+                result.acceptTyped(ordinal, typed);
+            }
+        }
+        String trimmed = value.trim();
+        String clean = sanitize ? strip(trimmed, result) : trimmed;
+        if (clean == null) {
+            reject(result, ordinal, new ValidationError(rules.fieldAt(ordinal), ErrorCode.TIMEOUT));
+            return false;
+        }
+        result.accept(ordinal, clean);
+        return true;
+    }
+
+    /**
+     * Same contract of validateField, the outcome of the rule is looked up in the cache and stored there
+     * when missing. A value whose cleaning ran out of time is not cached.
+     */
+    private boolean validateCached(int ordinal, CompiledRule rule, String value, ValidationResult result, boolean sanitize) {
+        VerdictCache.Verdict verdict = verdicts.get(rule, value);
+        if (verdict == null) {
+            ErrorCode code = check(ordinal, rule, value);
+            if (code != null) {
+                verdict = new VerdictCache.Verdict(code, null, CompiledRule.NO_VALUE);
+            } else {
+                String clean = strip(value.trim(), result);
+                if (clean == null) {
+                    reject(result, ordinal, new ValidationError(rules.fieldAt(ordinal), ErrorCode.TIMEOUT));
+                    return false;
+                }
+                long typed = rule.getType() != ValueType.NONE ? rule.typedValue(value) : CompiledRule.NO_VALUE;
+                verdict = new VerdictCache.Verdict(null, clean, typed);
+            }
+            verdict = verdicts.put(rule, value, verdict);
+        }
+        if (verdict.code != null) {
+            reject(result, ordinal, error(rule, ordinal, verdict.code, value));
+            return false;
+        }
+        if (verdict.typed != CompiledRule.NO_VALUE) {
+            result.acceptTyped(ordinal, verdict.typed);
+        }
+        // with FAIL_FAST the values are cleaned by finishFailFast
+        result.accept(ordinal, sanitize ? verdict.clean : value.trim());
+        return true;
+    }
+
+    /**
+     * The length of the value is checked before the rule, so a huge value never reaches a scan or a regular expression
+     */
+    private ErrorCode check(int ordinal, CompiledRule rule, String value) {
+        if (value.length() > maxValueLength) {
+            return ErrorCode.TOO_LONG;
+        }
+        if (adaptive != null) {
+            return adaptive[ordinal].check(value);
+        }
+        return rule.check(value);
+    }
+
+    private ValidationError error(CompiledRule rule, int ordinal, ErrorCode code, String value) {
+        if (code == ErrorCode.TOO_LONG) {
+            return new ValidationError(rules.fieldAt(ordinal), code, maxValueLengthText, value.length());
+        }
+        return rule.error(rules.fieldAt(ordinal), code, value);
+    }
+
+    /**
+     * Check every value of a parameter, the field is good only if all its values are good
+     */
+    boolean validateValues(int ordinal, String[] values, ValidationResult result, boolean sanitize) {
+        if (values == null || values.length == 0) {
+            return validateField(ordinal, WashingMachine.EMPTY_STRING, result, sanitize);
+        }
+        boolean good = validateField(ordinal, emptyIfNull(values[0]), result, sanitize);
+        if (!good || values.length == 1) {
+            return good;
+        }
+        CompiledRule rule = rules.ruleAt(ordinal);
+        String[] clean = new String[values.length];
+        clean[0] = result.getCleanValue(ordinal);
+        for (int i = 1; i < values.length; i++) {
+            String value = emptyIfNull(values[i]);
+            ErrorCode code = check(ordinal, rule, value);
+            if (code != null) {
+                reject(result, ordinal, error(rule, ordinal, code, value));
+                return false;
+            }
+            clean[i] = sanitize ? strip(value.trim(), result) : value.trim();
+            if (clean[i] == null) {
+                reject(result, ordinal, new ValidationError(rules.fieldAt(ordinal), ErrorCode.TIMEOUT));
+                return false;
+            }
+        }
+        result.acceptAll(ordinal, clean);
+        return true;
+    }
+
+    /**
+     * Reject a field whose value is known only by its length, see FormBodyValidator
+     */
+    void reject(ValidationResult result, int ordinal, ErrorCode code, int length) {
+        String field = rules.fieldAt(ordinal);
+        CompiledRule rule = rules.ruleAt(ordinal);
+        if (code == ErrorCode.TOO_LONG) {
+            reject(result, ordinal, new ValidationError(field, code, maxValueLengthText, length));
+        } else if (rule == null) {
+            reject(result, ordinal, new ValidationError(field, code, null, length));
+        } else {
+            reject(result, ordinal, rule.error(field, code, length));
+        }
+    }
+
+    int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    private void reject(ValidationResult result, int ordinal, ValidationError error) {
+        result.reject(ordinal, error);
+        if (metrics != null) {
+            metrics.failed(error.getCode());
+        }
+    }
+
+    /**
+     * Reject a field of a result already counted by the metrics, see AsyncValidator: a result that
+     * was good is counted as rejected from now on
+     */
+    void rejectAfterCall(ValidationResult result, int ordinal, ValidationError error) {
+        boolean wasGood = result.isGood();
+        reject(result, ordinal, error);
+        if (metrics != null && wasGood) {
+            metrics.rejectedAfterCall();
+        }
+    }
+
+    void rejectUnknown(ValidationResult result, String field) {
+        result.rejectUnknown(field);
+        if (metrics != null) {
+            metrics.failed(ErrorCode.NO_RULE);
+        }
+    }
+
+    /**
+     * @return the cleaned value, null if the time budget of the call has been spent
+     */
+    private String strip(String value, ValidationResult result) {
+        try {
+            if (metrics == null) {
+                return XssSanitizer.strip(value, result.getDeadline());
+            }
+            long start = System.nanoTime();
+            String clean = XssSanitizer.strip(value, result.getDeadline());
+            metrics.sanitized(clean != value, System.nanoTime() - start);
+            return clean;
+        } catch (MatchTimeoutException e) {
+            return null;
+        }
+    }
+
+    private static String emptyIfNull(String value) {
+        return value == null ? WashingMachine.EMPTY_STRING : value;
+    }
+
+    /**
+     * With FAIL_FAST the values are cleaned only at the end, once, here, and only when all the fields
+     * are good. When a field is not good the values accepted before it are blanked instead, so no
+     * regular expression runs for an input that is rejected and no value that still has its scripts
+     * is ever given back.
+     */
+    void finishFailFast(ValidationResult result) {
+        if (!result.isGood()) {
+            for (int ordinal = 0; ordinal < rules.size(); ordinal++) {
+                if (result.getCleanValue(ordinal) != null && !result.isRejected(ordinal)) {
+                    result.blank(ordinal);
+                }
+            }
+            return;
+        }
+        for (int ordinal = 0; ordinal < rules.size(); ordinal++) {
+            String[] all = result.allCleanValuesAt(ordinal);
+            String value = all != null ? all[0] : result.getCleanValue(ordinal);
+            if (value == null) {
+                continue;
+            }
+            boolean timedOut = false;
+            for (int i = 1; all != null && i < all.length && !timedOut; i++) {
+                all[i] = strip(all[i], result);
+                timedOut = all[i] == null;
+            }
+            String clean = timedOut ? null : strip(value, result);
+            if (clean == null) {
+                // the fields after this one still have to be cleaned, or rejected in their turn
+                reject(result, ordinal, new ValidationError(rules.fieldAt(ordinal), ErrorCode.TIMEOUT));
+                continue;
+            }
+            if (all != null) {
+                all[0] = clean;
+            }
+            result.accept(ordinal, clean);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package net.funambolo;
+
+/**
+ * The type a rule gives to the values of a field, the clean value of such a field is also kept in its
+ * typed form so that it can be read without parsing it again.
+ */
+public enum ValueType {
+
+    /**
+     * the rule does not imply a type, only the clean String is available
+     */
+    NONE,
+
+    /**
+     * integer, minnumeric or maxnumeric: a long, read with getCleanLong
+     */
+    LONG,
+
+    /**
+     * boolean: read with getCleanBoolean
+     */
+    BOOLEAN,
+
+    /**
+     * calendardate or mysqldate: a date packed as yyyymmdd, ex: 20170522, read with getCleanDate
+     */
+    DATE,
+
+    /**
+     * time: the minutes from midnight, ex: 765 for 12:45, read with getCleanTime
+     */
+    TIME
+}
@@ -0,0 +1,128 @@
+package net.funambolo;
+
+/**
+ * Thread-safe memo of the outcome of a rule on a value: the ErrorCode, the typed value and the value
+ * cleaned by XssSanitizer. Many values repeat all the time, ex: the codes of a drop down, "true" and
+ * "false", the names of the countries, small numbers; with the cache they are checked and cleaned
+ * once and then only looked up.
+ *
+ * The key is the source of the rule, ex: "required|integer", together with the value: rules with the
+ * same source always give the same outcome, so a cache can be shared by many Validators, also by the
+ * ones compiled again for every request, as WashingMachine.setRules does.
+ * Only values up to maxValueLength characters are cached: long values rarely repeat and they would
+ * fill the cache. The cache keeps at most maxSize outcomes, evicting the ones not used recently.
+ *
+ * Example of usage
+ * private static final VerdictCache VERDICTS = new VerdictCache(100000, VerdictCache.DEFAULT_MAX_VALUE_LENGTH);
+ * private static final Validator USER_FORM = Validator.compile(rules).withVerdictCache(VERDICTS);
+ */
+public final class VerdictCache {
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 64;
+
+    private final BoundedCache<Key, Verdict> cache;
+    private final int maxValueLength;
+
+    public VerdictCache(int maxSize, int maxValueLength) {
+        if (maxValueLength < 0) {
+            throw new IllegalArgumentException("The maximum length of a cached value can not be negative: " + maxValueLength);
+        }
+        this.cache = new BoundedCache<>(maxSize);
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * The outcome of a rule on a value, code is null for a good value
+     */
+    static final class Verdict {
+        final ErrorCode code;
+        final String clean;
+        final long typed;
+
+        Verdict(ErrorCode code, String clean, long typed) {
+            this.code = code;
+            this.clean = clean;
+            this.typed = typed;
+        }
+    }
+
+    private static final class Key {
+        private final String rule;
+        private final String value;
+        private final int hash;
+
+        Key(CompiledRule rule, String value) {
+            this.rule = rule.getSource();
+            this.value = value;
+            this.hash = this.rule.hashCode() * 31 + value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return rule.equals(other.rule) && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    boolean isCacheable(String value) {
+        return value.length() <= maxValueLength;
+    }
+
+    /**
+     * @return the cached outcome, null if it is not in the cache
+     */
+    Verdict get(CompiledRule rule, String value) {
+        return cache.get(new Key(rule, value));
+    }
+
+    /**
+     * @return the outcome in the cache: verdict, or the one put by another thread in the meantime
+     */
+    Verdict put(CompiledRule rule, String value, Verdict verdict) {
+        return cache.put(new Key(rule, value), verdict);
+    }
+
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    /**
+     * @return hits / (hits + misses), 0 if the cache has never been used
+     */
+    public double getHitRate() {
+        long hits = cache.getHits();
+        long total = hits + cache.getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -1,10 +1,14 @@
 package net.funambolo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Created by Fabio Mattei
@@ -15,11 +19,32 @@ import java.util.regex.Pattern;
  * This class is meant to validate the input following the rules given by the software developer.
  * It gives an alarm if the input does not follow the rules and it gives back to the caller
  * the cleaned values.
+ *
+ * A WashingMachine is meant to be used for a single request. When the same form is validated by many
+ * requests, possibly from many threads, a single Validator can be shared instead.
+ *
+ * As it has always done, getErrors gives back the messages of every call to isGood since the
+ * WashingMachine was created, the caller can add its own messages to the list. getValidationErrors,
+ * the clean values and the typed values are those of the last call only.
  */
 public class WashingMachine {
     private HashMap<String, String> values;
-    private HashMap<String, String> rules;
-    private HashMap<String, String> cleanValues = new HashMap<String, String>();
+    private ParameterSource parameters;
+    private Validator validator;
+    private ValidationResult result = new ValidationResult(RuleSet.EMPTY);
+    // the messages of the earlier calls to isGood and those added by the caller, see getErrors
+    private final List<String> errors = new ArrayList<>();
+    // the errors of the calls after the last getErrors, they are rendered only when the messages are read
+    private final List<ValidationError> unrendered = new ArrayList<>();
+    private ValidationMode mode = ValidationMode.COLLECT_ALL;
+    private ValidationMetrics metrics;
+    private int maxValueLength = Validator.NO_LIMIT;
+    private long matchBudgetNanos;
+    private VerdictCache verdicts;
+    // field name -> custom rule, see CustomRule
+    private final LinkedHashMap<String, CustomRule> customRules = new LinkedHashMap<>();
+    // the values of the last call to isGood, see isGoodWithChanges
+    private HashMap<String, String> validatedValues;
 
     public static final String RULE_BOOLEAN = "boolean";
     public static final String RULE_INTEGER = "integer";
@@ -39,16 +64,6 @@ public class WashingMachine {
     public static final String RULE_DIV = "|";
     public static final String EMPTY_STRING = "";
 
-    private static final String RE_CALENDARDATE = "^(0?[1-9]|[12][0-9]|3[01])[\\/\\-](0?[1-9]|1[012])[\\/\\-](\\d{4})$";
-    private static final String RE_MYSQLDATE = "^(\\d{4})-\\d{2}-(\\d{2})$";
-    private static final String RE_TIME = "\\d{2}:\\d{2}";
-    private static final String RE_INTEGER = "(?=.*[^ ])[0-9]+";
-    private static final String RE_ONLYNUMERIC = "(?=.*[^ ])[0-9\\., ]+";
-    private static final String RE_ONLYALPHA = "(?=.*[^ ])[a-zA-ZÀ-ÿ\\?;\\.!@€£$&\\+=*\\{\\}\\[\\]\\(\\)\\-_\\r\\n\\t\\/,: ]+";
-    private static final String RE_ALPHANUMERIC = "^[a-zA-ZÀ-ÿ0-9\\?;\\.!@€£$&\\+=*\\{\\}\\[\\]\\(\\)\\-_\\r\\n\\t\\/,: ]*$";
-
-    private List<String> errors = new ArrayList<>();
-
     /**
      * This class check the content of a set o fields to see if they contina what they are ment to
      * possible filters are:
@@ -62,8 +77,9 @@ public class WashingMachine {
      * - maxlen              followed by a number is the maximum allowed lenght of the passed parameter
      * - minnumeric          followed by a number n the filled content need to be greater then n
      * - maxnumeric          followed by a number n the filled content need to be less then n
-     * - calendardate        it has to have the format dd/mm/yyyy
-     * - mysqldate           it has to have the format yyyy-mm-dd
+     * - calendardate        it has to be an existing date with the format dd/mm/yyyy
+     * - mysqldate           it has to be an existing date with the format yyyy-mm-dd
+     * - time                it has to be a time of the day with the format hh:mm
      * - required            the field is mandatory
      * - checkbox            the field could be missing and that would not give an error, a check box must be followed by a type ex: integer or alphanumerical
      *
@@ -82,343 +98,276 @@ public class WashingMachine {
             }
         }
         this.values = values;
+        this.parameters = null;
+        this.validatedValues = null;
     }
 
-    public void setRules(HashMap<String, String> rules) {
-        this.rules = rules;
+    /**
+     * The parameters are read in place during isGood, nothing is copied or modified,
+     * ex: setParameters(ParameterSource.of(request.getParameterMap()))
+     */
+    public void setParameters(ParameterSource parameters) {
+        this.parameters = parameters;
+        this.values = null;
+        this.validatedValues = null;
     }
 
-    public List<String> getErrors() {
-        return errors;
+    /**
+     * The rules are compiled once here, if the same rules are used by many requests it is better
+     * to compile them once with RuleSet.compile and to use setRuleSet
+     */
+    public void setRules(HashMap<String, String> rules) {
+        this.validator = configure(Validator.compile(rules));
     }
 
-    public HashMap<String, String> getCleanValues() {
-        return cleanValues;
+    /**
+     * For rules built at runtime: the rules are compiled only the first time the cache sees them
+     */
+    public void setRules(HashMap<String, String> rules, RuleSetCache cache) {
+        this.validator = configure(new Validator(cache.compile(rules)));
     }
 
-    public String getCleanValue(String key) {
-        if (cleanValues.containsKey(key)) {
-            return cleanValues.get(key);
-        } else {
-            return "";
-        }
+    public void setRuleSet(RuleSet rules) {
+        this.validator = configure(new Validator(rules));
     }
 
     /**
-     * Debug purpose
-     * It prints with a System.out.println the parameter key, the associated rules, the received value and the clean value
+     * With ValidationMode.FAIL_FAST isGood stops at the first field that is not good, when only a yes/no
+     * answer is needed. The default is ValidationMode.COLLECT_ALL.
      */
-    public void printAllRulesAndParameters() {
-        for (String key : values.keySet()) {
-            System.out.println("Paramenter: " + key + "  Rule: " + rules.get(key) + "  Value: " + values.get(key) + "  Clean value: " + cleanValues.get(key));
-        }
+    public void setValidationMode(ValidationMode mode) {
+        this.mode = mode;
     }
 
-    public long getCleanLongValue(String key) {
-        if (cleanValues.containsKey(key)) {
-            try {
-                return Long.parseLong(cleanValues.get(key));
-            } catch (NumberFormatException ex) {
-                return (long) 0;
-            }
-        } else {
-            return (long) 0;
+    /**
+     * Record the calls to isGood in metrics, the same ValidationMetrics can be shared by many
+     * WashingMachine instances, null to disable the metrics
+     */
+    public void setMetrics(ValidationMetrics metrics) {
+        this.metrics = metrics;
+        if (validator != null) {
+            validator = configure(validator);
         }
     }
 
     /**
-     * return all pair [key, value] with a key that contains a certain pattern
-     *
-     * Example if pattern is "checkbox" and key is "checkbox01" the pair key, value will be returned
-     *
-     * @param pattern
-     * @return
+     * Values longer than maxValueLength are rejected before any check, see Validator.withMaxValueLength
      */
-    public HashMap<String, String> getCleanValuesWithPattern(String pattern) {
-        HashMap<String, String> out = new HashMap<>();
-        for (String key : cleanValues.keySet()) {
-            if (key.contains(pattern)) {
-                out.put(key, cleanValues.get(key));
-            }
+    public void setMaxValueLength(int maxValueLength) {
+        this.maxValueLength = maxValueLength;
+        if (validator != null) {
+            validator = configure(validator);
         }
-        return out;
     }
 
-    public boolean isGood() {
-        boolean out = true;
-        for (String key : values.keySet()) {
-            if (!singleValueIsGood(key, values.get(key), rules.get(key))) {
-                cleanValues.put(key, "");
-                out = false;
-            } else {
-                cleanValues.put(key, stripXSS(values.get(key).trim()));
-            }
-        }
-        return out;
-    }
-
-    private boolean singleValueIsGood(String field, String value, String rule) {
-        if (value == null) {
-            // a checkbox could send back a null field
-            if (rule.contains(RULE_CHECKBOX)) {
-                if (rule.contains(RULE_INTEGER) || rule.contains(RULE_ONLYNUMERIC)) {
-                    values.put(field, "0");
-                    value = "0";
-                } else {
-                    values.put(field, "");
-                    value = "";
-                }
-            } else {
-                errors.add("The field " + field + " has not been defined");
-                return false;
-            }
-        }
-        if (rule == null) {
-            errors.add("No check defined for the field " + field);
-            return false;
-        }
-        if (rule.contains(RULE_REQUIRED)) {
-            if (value.trim().length() == 0) {
-                errors.add("The " + field + " field is required");
-                return false;
-            }
-        }
-        Pattern p = Pattern.compile(".*maxlen,([0-9]+).*");
-        Matcher m = p.matcher(rule);
-        if (m.find()) {
-            int mx = Integer.parseInt(m.group(1));
-            if (value.length() > mx) {
-                errors.add("The " + field + " field needs to be shorter than " + value.length() + " character");
-                return false;
-            }
-        }
-
-        p = Pattern.compile(".*minlen,([0-9]+).*");
-        m = p.matcher(rule);
-        if (m.find()) {
-            int mx = Integer.parseInt(m.group(1));
-            if (value.length() < mx) {
-                errors.add("The " + field + " field needs to be longer than " + value.length() + " character");
-                return false;
-            }
-        }
-        p = Pattern.compile(".*exactlen,([0-9]+).*");
-        m = p.matcher(rule);
-        if (m.find()) {
-            int mx = Integer.parseInt(m.group(1));
-            if (value.length() != mx) {
-                errors.add("The " + field + " field needs to be exactly " + value.length() + " character in length");
-                return false;
-            }
-        }
-
-        if (rule.contains(RULE_ALPHANUMERIC)) {
-            if (rule.contains(RULE_REQUIRED)) {
-                if (!value.matches(RE_ALPHANUMERIC)) {
-                    errors.add("The " + field + " field may only contain alpha-numeric characters");
-                    return false;
-                }
-            } else {
-                if (!EMPTY_STRING.equals(value) && !value.matches(RE_ALPHANUMERIC)) {
-                    errors.add("The " + field + " field may only contain alpha-numeric characters");
-                    return false;
-                }
-            }
-        }
-
-        if (rule.contains(RULE_ONLYALPHA)) {
-            if (rule.contains(RULE_REQUIRED)) {
-                if (!value.matches(RE_ONLYALPHA)) {
-                    errors.add("The " + field + " field may only contain alpha characters");
-                    return false;
-                }
-            } else {
-                if (!EMPTY_STRING.equals(value) && !value.matches(RE_ONLYALPHA)) {
-                    errors.add("The " + field + " field may only contain alpha characters");
-                    return false;
-                }
-            }
+    /**
+     * Time isGood can spend before the matching of a value is stopped and the field rejected, see Validator.withMatchTimeBudget
+     */
+    public void setMatchTimeBudget(long budget, TimeUnit unit) {
+        this.matchBudgetNanos = unit.toNanos(budget);
+        if (validator != null) {
+            validator = configure(validator);
         }
+    }
 
-        if (rule.contains(RULE_ONLYNUMERIC)) {
-            if (rule.contains(RULE_REQUIRED)) {
-                if (!value.matches(RE_ONLYNUMERIC)) {
-                    errors.add("The " + field + " field may only contain numeric characters");
-                    return false;
-                }
-            } else {
-                if (!EMPTY_STRING.equals(value) && !value.matches(RE_ONLYNUMERIC)) {
-                    errors.add("The " + field + " field may only contain numeric characters");
-                    return false;
-                }
-            }
+    /**
+     * Values already seen by the same rule are not checked and cleaned again, see VerdictCache, null
+     * to check every value
+     */
+    public void setVerdictCache(VerdictCache verdicts) {
+        this.verdicts = verdicts;
+        if (validator != null) {
+            validator = configure(validator);
         }
+    }
 
-        if (rule.contains(RULE_INTEGER)) {
-            if (rule.contains(RULE_REQUIRED)) {
-                if (!value.matches(RE_INTEGER)) {
-                    errors.add("The " + field + " field may only contain integer number");
-                    return false;
-                }
-            } else {
-                if (!EMPTY_STRING.equals(value) && !value.matches(RE_INTEGER)) {
-                    errors.add("The " + field + " field may only contain integer number");
-                    return false;
-                }
-            }
-        }
+    private Validator configure(Validator validator) {
+        return validator.withMetrics(metrics)
+                .withMaxValueLength(maxValueLength)
+                .withMatchTimeBudget(matchBudgetNanos, TimeUnit.NANOSECONDS)
+                .withVerdictCache(verdicts);
+    }
 
-        if (rule.contains(RULE_BOOLEAN)) {
-            if (!(value.matches("true") || value.matches("false"))) {
-                errors.add("The " + field + " field may only contain a true or false value");
-                return false;
-            }
+    public List<String> getErrors() {
+        for (ValidationError error : unrendered) {
+            errors.add(error.getMessage());
         }
+        unrendered.clear();
+        return errors;
+    }
 
-        p = Pattern.compile(".*minnumeric,([0-9]+).*");
-        m = p.matcher(rule);
-        if (m.find()) {
-            long mx = Long.parseLong(m.group(1));
-            long localvalue = 0;
-            try {
-                localvalue = Long.parseLong(value);
-            } catch (NumberFormatException e) {
-                errors.add("The " + field + " field needs to be numeric");
-                return false;
-            }
-            if (localvalue < mx) {
-                errors.add("The " + field + " field needs to greater then " + mx );
-                return false;
-            }
-        }
+    public List<ValidationError> getValidationErrors() {
+        return result.getValidationErrors();
+    }
 
-        p = Pattern.compile(".*maxnumeric,([0-9]+).*");
-        m = p.matcher(rule);
-        if (m.find()) {
-            long mx = Long.parseLong(m.group(1));
-            long localvalue = 0;
-            try {
-                localvalue = Long.parseLong(value);
-            } catch (NumberFormatException e) {
-                errors.add("The " + field + " field needs to be numeric");
-                return false;
-            }
-            if (localvalue > mx) {
-                errors.add("The " + field + " field needs to less then " + mx);
-                return false;
-            }
-        }
+    public HashMap<String, String> getCleanValues() {
+        return result.getCleanValues();
+    }
 
-        if (rule.contains(RULE_CALENDARDATE)) {
-            if (rule.contains(RULE_REQUIRED)) {
-                if (!value.matches(RE_CALENDARDATE)) {
-                    errors.add("The " + field + " field needs to be a valid date");
-                    return false;
-                }
-            } else {
-                if (!EMPTY_STRING.equals(value) && !value.matches(RE_CALENDARDATE)) {
-                    errors.add("The " + field + " field needs to be a valid date");
-                    return false;
-                }
-            }
-        }
+    public String getCleanValue(String key) {
+        return result.getCleanValue(key);
+    }
 
-        if (rule.contains(RULE_MYSQLDATE)) {
-            if (rule.contains(RULE_REQUIRED)) {
-                if (!value.matches(RE_MYSQLDATE)) {
-                    errors.add("The " + field + " field needs to be a valid date");
-                    return false;
-                }
-            } else {
-                if (!EMPTY_STRING.equals(value) && !value.matches(RE_MYSQLDATE)) {
-                    errors.add("The " + field + " field needs to be a valid date");
-                    return false;
-                }
+    /**
+     * Debug purpose
+     * It prints with a System.out.println the parameter key, the associated rules, the received value and the clean value
+     */
+    public void printAllRulesAndParameters() {
+        if (parameters != null) {
+            for (String key : parameters.getParameterNames()) {
+                System.out.println("Paramenter: " + key + "  Rule: " + validator.getRuleSet().get(key) + "  Value: " + Arrays.toString(parameters.getParameterValues(key)) + "  Clean value: " + result.getAllCleanValues(key));
             }
+            return;
         }
-
-        if (rule.contains(RULE_TIME)) {
-            if (rule.contains(RULE_REQUIRED)) {
-                if (!value.matches(RE_TIME)) {
-                    errors.add("The " + field + " field needs to be a valid time");
-                    return false;
-                }
-            } else {
-                if (!EMPTY_STRING.equals(value) && !value.matches(RE_TIME)) {
-                    errors.add("The " + field + " field needs to be a valid time");
-                    return false;
-                }
-            }
+        for (String key : values.keySet()) {
+            System.out.println("Paramenter: " + key + "  Rule: " + validator.getRuleSet().get(key) + "  Value: " + values.get(key) + "  Clean value: " + result.getCleanValues().get(key));
         }
-
-        return true;
     }
 
-    private String stripXSS(String value) {
-        if (value != null) {
-            // NOTE: It's highly recommended to use the ESAPI library and uncomment the following line to
-            // avoid encoded attacks.
-            // value = ESAPI.encoder().canonicalize(value);
+    public List<String> getAllCleanValues(String key) {
+        return result.getAllCleanValues(key);
+    }
 
-            // Avoid null characters
-            value = value.replaceAll("", "");
+    public long getCleanLongValue(String key) {
+        return result.getCleanLongValue(key);
+    }
 
-            // Avoid anything between script tags
-            Pattern scriptPattern = Pattern.compile("<script>(.*?)</script>", Pattern.CASE_INSENSITIVE);
-            value = scriptPattern.matcher(value).replaceAll("");
+    /**
+     * The typed getters give back the value parsed during the validation, without parsing it again
+     */
+    public long getCleanLong(String key) {
+        return result.getCleanLong(key);
+    }
 
-            // Avoid anything in a src='...' type of expression
-            scriptPattern = Pattern.compile("src[\r\n]*=[\r\n]*\\\'(.*?)\\\'", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-            value = scriptPattern.matcher(value).replaceAll("");
+    public boolean getCleanBoolean(String key) {
+        return result.getCleanBoolean(key);
+    }
 
-            scriptPattern = Pattern.compile("src[\r\n]*=[\r\n]*\\\"(.*?)\\\"", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-            value = scriptPattern.matcher(value).replaceAll("");
+    public int getCleanDate(String key) {
+        return result.getCleanDate(key);
+    }
 
-            // Remove any lonesome </script> tag
-            scriptPattern = Pattern.compile("</script>", Pattern.CASE_INSENSITIVE);
-            value = scriptPattern.matcher(value).replaceAll("");
+    public int getCleanTime(String key) {
+        return result.getCleanTime(key);
+    }
 
-            // Remove any lonesome <script ...> tag
-            scriptPattern = Pattern.compile("<script(.*?)>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-            value = scriptPattern.matcher(value).replaceAll("");
+    /**
+     * return all pair [key, value] with a key that contains a certain pattern
+     *
+     * Example if pattern is "checkbox" and key is "checkbox01" the pair key, value will be returned
+     *
+     * @param pattern
+     * @return
+     */
+    public HashMap<String, String> getCleanValuesWithPattern(String pattern) {
+        return result.getCleanValuesWithPattern(pattern);
+    }
 
-            // Avoid eval(...) expressions
-            scriptPattern = Pattern.compile("eval\\((.*?)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-            value = scriptPattern.matcher(value).replaceAll("");
+    /**
+     * return all pair [key, value] with a key that starts with a certain prefix, as a read only view
+     *
+     * Example if prefix is "checkbox" and key is "checkbox01" the pair key, value will be returned
+     *
+     * @param prefix
+     * @return
+     */
+    public Map<String, String> getCleanValuesWithPrefix(String prefix) {
+        return result.getCleanValuesWithPrefix(prefix);
+    }
 
-            // Avoid expression(...) expressions
-            scriptPattern = Pattern.compile("expression\\((.*?)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-            value = scriptPattern.matcher(value).replaceAll("");
+    /**
+     * Add a check the rules can not express, it runs after the rules on the clean value of the field,
+     * see CustomRule. With custom rules isGood waits for them, isGoodAsync does not.
+     */
+    public void setCustomRule(String field, CustomRule rule) {
+        customRules.put(field, rule);
+    }
 
-            // Avoid javascript:... expressions
-            scriptPattern = Pattern.compile("javascript:", Pattern.CASE_INSENSITIVE);
-            value = scriptPattern.matcher(value).replaceAll("");
+    public boolean isGood() {
+        if (!customRules.isEmpty()) {
+            return isGoodAsync().join();
+        }
+        result = parameters != null ? validator.validate(parameters, mode) : validator.validate(values, mode);
+        validatedValues = values;
+        unrendered.addAll(result.getValidationErrors());
+        return result.isGood();
+    }
 
-            // Avoid vbscript:... expressions
-            scriptPattern = Pattern.compile("vbscript:", Pattern.CASE_INSENSITIVE);
-            value = scriptPattern.matcher(value).replaceAll("");
+    /**
+     * Validate again only the fields that changed since the last call to isGood, ex: an autosave of a
+     * form, the other fields keep their clean values and errors. The whole form is validated when there
+     * is no previous validation of the same values and rules, with custom rules or with FAIL_FAST.
+     *
+     * @param changedValues field name -> new value, they are copied in the values of this WashingMachine,
+     *                      a null value is read as an empty String as setValues does
+     */
+    public boolean isGoodWithChanges(Map<String, String> changedValues) {
+        HashMap<String, String> delta = new HashMap<>();
+        for (Map.Entry<String, String> entry : changedValues.entrySet()) {
+            delta.put(entry.getKey(), entry.getValue() == null ? EMPTY_STRING : entry.getValue());
+        }
+        boolean canUpdate = values != null && values == validatedValues && customRules.isEmpty()
+                && mode == ValidationMode.COLLECT_ALL && result.getRuleSet() == validator.getRuleSet();
+        if (values == null) {
+            setValues(new HashMap<String, String>());
+        }
+        values.putAll(delta);
+        if (!canUpdate) {
+            return isGood();
+        }
+        result = validator.update(result, delta);
+        unrendered.addAll(result.getValidationErrors());
+        return result.isGood();
+    }
 
-            // Avoid onload= expressions
-            scriptPattern = Pattern.compile("onload(.*?)=", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-            value = scriptPattern.matcher(value).replaceAll("");
+    /**
+     * The rules are checked now, the custom rules are started together with one lookup for each
+     * LookupResolver. The errors and the clean values can be read once the future is completed.
+     */
+    public CompletableFuture<Boolean> isGoodAsync() {
+        ValidationResult validated = parameters != null ? validator.validate(parameters, mode) : validator.validate(values, mode);
+        result = validated;
+        validatedValues = values;
+        if (customRules.isEmpty() || (mode == ValidationMode.FAIL_FAST && !validated.isGood())) {
+            unrendered.addAll(validated.getValidationErrors());
+            return CompletableFuture.completedFuture(validated.isGood());
+        }
+        AsyncValidator async = new AsyncValidator(validator);
+        for (Map.Entry<String, CustomRule> entry : customRules.entrySet()) {
+            async = async.withRule(entry.getKey(), entry.getValue());
         }
-        return value;
+        return async.check(validated).thenApply(new Function<ValidationResult, Boolean>() {
+            @Override
+            public Boolean apply(ValidationResult checked) {
+                unrendered.addAll(checked.getValidationErrors());
+                return checked.isGood();
+            }
+        });
     }
 
     public String getAllErrors() {
-        String out = "";
-        for (String er : errors) {
-            out += er + " ";
-        }
-        return out;
+        StringBuilder out = new StringBuilder();
+        appendAllErrors(out, " ");
+        return out.toString();
     }
 
     public String getAllErrorsWithBr() {
-        String out = "";
+        StringBuilder out = new StringBuilder();
+        appendAllErrors(out, "<br />");
+        return out.toString();
+    }
+
+    /**
+     * Write every message of getErrors followed by the separator
+     */
+    public void appendAllErrors(StringBuilder out, String separator) {
         for (String er : errors) {
-            out += er + "<br />";
+            out.append(er).append(separator);
+        }
+        for (ValidationError er : unrendered) {
+            er.appendTo(out);
+            out.append(separator);
         }
-        return out;
     }
 
 }
@@ -0,0 +1,228 @@
+package net.funambolo;
+
+import java.util.regex.Pattern;
+
+/**
+ * Removes from a value the most common script injections: script tags, src='...' attributes,
+ * eval(...), expression(...), javascript:, vbscript: and onload= expressions.
+ *
+ * The value is scanned once looking for the keywords every removal starts with. When none of them
+ * is present, which is what happens for almost every value sent by a form, the value itself is
+ * given back without any allocation. Otherwise the removals are applied in the same order
+ * WashingMachine.stripXSS always applied them, so the output does not change: a removal can join
+ * two pieces of text into a new keyword, so the steps can not be merged.
+ *
+ * Patterns like onload(.*?)= scan to the end of the value for every keyword that is not closed, so
+ * a long value full of keywords takes a time quadratic in its length. A step is skipped when the
+ * character closing its pattern is not in the value at all, and strip(value, deadline) stops the
+ * matching with a MatchTimeoutException once the deadline has passed.
+ */
+public final class XssSanitizer {
+
+    private static final Pattern SCRIPT_BLOCK = Pattern.compile("<script>(.*?)</script>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SRC_SINGLE_QUOTE = Pattern.compile("src[\r\n]*=[\r\n]*\\\'(.*?)\\\'", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
+    private static final Pattern SRC_DOUBLE_QUOTE = Pattern.compile("src[\r\n]*=[\r\n]*\\\"(.*?)\\\"", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
+    private static final Pattern SCRIPT_CLOSE = Pattern.compile("</script>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCRIPT_OPEN = Pattern.compile("<script(.*?)>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
+    private static final Pattern EVAL = Pattern.compile("eval\\((.*?)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
+    private static final Pattern EXPRESSION = Pattern.compile("expression\\((.*?)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
+    private static final Pattern JAVASCRIPT = Pattern.compile("javascript:", Pattern.CASE_INSENSITIVE);
+    private static final Pattern VBSCRIPT = Pattern.compile("vbscript:", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ONLOAD = Pattern.compile("onload(.*?)=", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
+
+    public static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    private XssSanitizer() {
+    }
+
+    /**
+     * @param value the value to clean, it can be null
+     * @return the cleaned value, the same instance if there was nothing to remove
+     */
+    public static String strip(String value) {
+        return strip(value, NO_DEADLINE);
+    }
+
+    /**
+     * @param value the value to clean, it can be null
+     * @param deadline the System.nanoTime() after which the matching is stopped, NO_DEADLINE to never stop it
+     * @return the cleaned value, the same instance if there was nothing to remove
+     * @throws MatchTimeoutException if the deadline has passed before the end of the matching
+     */
+    public static String strip(String value, long deadline) {
+        if (value == null || !containsKeyword(value)) {
+            return value;
+        }
+        // NOTE: It's highly recommended to use the ESAPI library and uncomment the following line to
+        // avoid encoded attacks.
+        // value = ESAPI.encoder().canonicalize(value);
+
+        // Avoid anything between script tags
+        value = remove(SCRIPT_BLOCK, value, deadline);
+
+        // Avoid anything in a src='...' type of expression
+        value = remove(SRC_SINGLE_QUOTE, value, deadline);
+        value = remove(SRC_DOUBLE_QUOTE, value, deadline);
+
+        // Remove any lonesome </script> tag
+        value = remove(SCRIPT_CLOSE, value, deadline);
+
+        // Remove any lonesome <script ...> tag
+        if (value.indexOf('>') >= 0) {
+            value = remove(SCRIPT_OPEN, value, deadline);
+        }
+
+        // Avoid eval(...) expressions
+        if (value.indexOf(')') >= 0) {
+            value = remove(EVAL, value, deadline);
+
+            // Avoid expression(...) expressions
+            value = remove(EXPRESSION, value, deadline);
+        }
+
+        // Avoid javascript:... expressions
+        value = remove(JAVASCRIPT, value, deadline);
+
+        // Avoid vbscript:... expressions
+        value = remove(VBSCRIPT, value, deadline);
+
+        // Avoid onload= expressions
+        if (value.indexOf('=') >= 0) {
+            value = remove(ONLOAD, value, deadline);
+        }
+        return value;
+    }
+
+    private static String remove(Pattern pattern, String value, long deadline) {
+        if (deadline == NO_DEADLINE) {
+            return pattern.matcher(value).replaceAll("");
+        }
+        return pattern.matcher(new DeadlineCharSequence(value, deadline)).replaceAll("");
+    }
+
+    /**
+     * Single scan of the value: each position is dispatched on its first character and only the
+     * keywords starting with that character are compared. A keyword is reported only if the
+     * corresponding pattern could match, so a false answer means no pattern can change the value.
+     */
+    static boolean containsKeyword(String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            switch (lower(value.charAt(i))) {
+                case '<':
+                    if (startsWith(value, i, "<script") || startsWith(value, i, "</script>")) {
+                        return true;
+                    }
+                    break;
+                case 's':
+                    if (startsWith(value, i, "src") && isSrcAssignment(value, i + 3)) {
+                        return true;
+                    }
+                    break;
+                case 'e':
+                    if (startsWith(value, i, "eval(") || startsWith(value, i, "expression(")) {
+                        return true;
+                    }
+                    break;
+                case 'j':
+                    if (startsWith(value, i, "javascript:")) {
+                        return true;
+                    }
+                    break;
+                case 'v':
+                    if (startsWith(value, i, "vbscript:")) {
+                        return true;
+                    }
+                    break;
+                case 'o':
+                    if (startsWith(value, i, "onload")) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * [\r\n]*=[\r\n]*['"] starting from i
+     */
+    private static boolean isSrcAssignment(String value, int i) {
+        int length = value.length();
+        while (i < length && isLineBreak(value.charAt(i))) {
+            i++;
+        }
+        if (i >= length || value.charAt(i) != '=') {
+            return false;
+        }
+        i++;
+        while (i < length && isLineBreak(value.charAt(i))) {
+            i++;
+        }
+        return i < length && (value.charAt(i) == '\'' || value.charAt(i) == '"');
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\r' || c == '\n';
+    }
+
+    /**
+     * Case insensitive on ASCII letters only, as Pattern.CASE_INSENSITIVE without UNICODE_CASE
+     */
+    private static boolean startsWith(String value, int offset, String lowerKeyword) {
+        int length = lowerKeyword.length();
+        if (offset + length > value.length()) {
+            return false;
+        }
+        for (int k = 0; k < length; k++) {
+            if (lower(value.charAt(offset + k)) != lowerKeyword.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * The value as seen by the regular expressions, every few thousand characters read the clock
+     * is compared with the deadline.
+     */
+    private static final class DeadlineCharSequence implements CharSequence {
+        private final String value;
+        private final long deadline;
+        private int reads;
+
+        DeadlineCharSequence(String value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFF) == 0 && System.nanoTime() - deadline > 0) {
+                throw new MatchTimeoutException();
+            }
+            return value.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
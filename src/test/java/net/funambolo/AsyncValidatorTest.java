@@ -0,0 +1,255 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public class AsyncValidatorTest {
+
+    /**
+     * In memory resolver answering on another thread and counting its calls
+     */
+    private static final class InMemoryResolver implements LookupResolver {
+        private final Set<String> existing;
+        private final ExecutorService executor;
+        final AtomicInteger calls = new AtomicInteger();
+        final List<Set<String>> requests = new ArrayList<Set<String>>();
+
+        InMemoryResolver(ExecutorService executor, String... existing) {
+            this.existing = new HashSet<String>(Arrays.asList(existing));
+            this.executor = executor;
+        }
+
+        @Override
+        public CompletableFuture<Set<String>> findExisting(final Set<String> keys) {
+            calls.incrementAndGet();
+            requests.add(new HashSet<String>(keys));
+            return CompletableFuture.supplyAsync(new Supplier<Set<String>>() {
+                @Override
+                public Set<String> get() {
+                    Set<String> found = new HashSet<String>(keys);
+                    found.retainAll(existing);
+                    return found;
+                }
+            }, executor);
+        }
+    }
+
+    private static HashMap<String, String> rules() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("username", "required|alphanumerical|maxlen,20");
+        rules.put("referrer", "alphanumerical|maxlen,20");
+        rules.put("country", "required|onlyalpha|exactlen,2");
+        return rules;
+    }
+
+    private static HashMap<String, String> record(String username, String referrer, String country) {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("username", username);
+        values.put("referrer", referrer);
+        values.put("country", country);
+        return values;
+    }
+
+    @Test
+    public void givenLookupsOnManyFields_ResolverIsCalledOnce() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            InMemoryResolver users = new InMemoryResolver(executor, "fabio", "anna");
+            AsyncValidator validator = new AsyncValidator(Validator.compile(rules()))
+                    .withRule("username", CustomRule.mustNotExist("is already taken", users))
+                    .withRule("referrer", CustomRule.mustExist("is not a known user", users));
+
+            ValidationResult result = validator.validate(record(" fabio ", "anna", "IT")).join();
+            Assert.assertEquals(false, result.isGood());
+            Assert.assertEquals(Arrays.asList("The username field is already taken"), result.getErrors());
+            Assert.assertEquals(1, users.calls.get());
+            Assert.assertEquals(new HashSet<String>(Arrays.asList("fabio", "anna")), users.requests.get(0));
+
+            result = validator.validate(record("marco", "", "IT")).join();
+            Assert.assertEquals(true, result.isGood());
+            Assert.assertEquals("marco", result.getCleanValue("username"));
+            Assert.assertEquals(2, users.calls.get());
+            // the empty referrer is not looked up
+            Assert.assertEquals(new HashSet<String>(Arrays.asList("marco")), users.requests.get(1));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenManyRecords_LookupsAreCoalesced() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            InMemoryResolver users = new InMemoryResolver(executor, "user3", "user7");
+            InMemoryResolver countries = new InMemoryResolver(executor, "IT", "FR");
+            AsyncValidator validator = new AsyncValidator(Validator.compile(rules()))
+                    .withRule("username", CustomRule.mustNotExist("is already taken", users))
+                    .withRule("country", CustomRule.mustExist("is not a known country", countries));
+            List<HashMap<String, String>> records = new ArrayList<HashMap<String, String>>();
+            for (int i = 0; i < 10; i++) {
+                records.add(record("user" + i, "", i % 2 == 0 ? "IT" : "DE"));
+            }
+            // a record already rejected by its rules is not looked up
+            records.add(record("", "", "IT"));
+
+            List<ValidationResult> results = validator.validateAll(records).join();
+            Assert.assertEquals(1, users.calls.get());
+            Assert.assertEquals(1, countries.calls.get());
+            Assert.assertEquals(10, users.requests.get(0).size());
+            Assert.assertEquals(2, countries.requests.get(0).size());
+            for (int i = 0; i < 10; i++) {
+                boolean taken = i == 3 || i == 7;
+                boolean known = i % 2 == 0;
+                Assert.assertEquals("record " + i, !taken && known, results.get(i).isGood());
+                Assert.assertEquals((taken ? 1 : 0) + (known ? 0 : 1), results.get(i).getErrors().size());
+            }
+            Assert.assertEquals(Arrays.asList("The username field is required"), results.get(10).getErrors());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenPlainAndAsyncRules_TheyRunOnTheCleanValues() {
+        AsyncValidator validator = new AsyncValidator(Validator.compile(rules()))
+                .withRule("username", CustomRule.of("can not start with admin", new Predicate<String>() {
+                    @Override
+                    public boolean test(String value) {
+                        return !value.startsWith("admin");
+                    }
+                }))
+                .withRule("country", CustomRule.async("is not served", new Function<String, CompletableFuture<Boolean>>() {
+                    @Override
+                    public CompletableFuture<Boolean> apply(String value) {
+                        return CompletableFuture.completedFuture(!"FR".equals(value));
+                    }
+                }));
+        ValidationResult result = validator.validate(record("  admin1", "", "FR")).join();
+        Assert.assertEquals(2, result.getErrors().size());
+        Assert.assertTrue(result.getErrors().contains("The username field can not start with admin"));
+        Assert.assertTrue(result.getErrors().contains("The country field is not served"));
+        Assert.assertEquals(ErrorCode.CUSTOM, result.getValidationErrors().get(0).getCode());
+    }
+
+    @Test
+    public void givenFailingResolver_FutureFails() {
+        LookupResolver broken = new LookupResolver() {
+            @Override
+            public CompletableFuture<Set<String>> findExisting(Set<String> keys) {
+                throw new IllegalStateException("database down");
+            }
+        };
+        AsyncValidator validator = new AsyncValidator(Validator.compile(rules()))
+                .withRule("username", CustomRule.mustNotExist("is already taken", broken));
+        try {
+            validator.validate(record("fabio", "", "IT")).join();
+            Assert.fail();
+        } catch (CompletionException e) {
+            Assert.assertEquals("database down", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void givenWashingMachineWithCustomRule_IsGoodWaitsForIt() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            InMemoryResolver users = new InMemoryResolver(executor, "fabio");
+            WashingMachine washingMachine = new WashingMachine();
+            washingMachine.setRules(rules());
+            washingMachine.setCustomRule("username", CustomRule.mustNotExist("is already taken", users));
+            washingMachine.setValues(record("fabio", "", "IT"));
+            Assert.assertEquals(false, washingMachine.isGood());
+            Assert.assertEquals("The username field is already taken", washingMachine.getErrors().get(0));
+            Assert.assertEquals("", washingMachine.getCleanValue("username"));
+
+            washingMachine.setValues(record("marco", "", "IT"));
+            Assert.assertEquals(Boolean.TRUE, washingMachine.isGoodAsync().join());
+            Assert.assertEquals("marco", washingMachine.getCleanValue("username"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenCleanValuesReadBeforeTheCustomRules_RejectedFieldIsNotInThem() {
+        Validator validator = Validator.compile(rules());
+        AsyncValidator async = new AsyncValidator(validator)
+                .withRule("username", CustomRule.of("can not start with admin", new Predicate<String>() {
+                    @Override
+                    public boolean test(String value) {
+                        return !value.startsWith("admin");
+                    }
+                }));
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("username", "admin2");
+        values.put("unknown", "x");
+        ValidationResult result = validator.validate(values);
+        Assert.assertEquals("admin2", result.getCleanValues().get("username"));
+
+        async.check(result).join();
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals(2, result.getErrors().size());
+        Assert.assertEquals("", result.getCleanValues().get("username"));
+
+        // the map read before is not given back after an update
+        HashMap<String, String> changed = new HashMap<String, String>();
+        changed.put("username", "mario");
+        validator.update(result, changed);
+        Assert.assertEquals("mario", result.getCleanValues().get("username"));
+        changed.put("other", "x");
+        validator.update(result, changed);
+        Assert.assertEquals("", result.getCleanValues().get("other"));
+    }
+
+    @Test
+    public void givenResolverAnsweringNull_FutureFailsWithTheReason() {
+        LookupResolver broken = new LookupResolver() {
+            @Override
+            public CompletableFuture<Set<String>> findExisting(Set<String> keys) {
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        AsyncValidator validator = new AsyncValidator(Validator.compile(rules()))
+                .withRule("username", CustomRule.mustNotExist("is already taken", broken));
+        try {
+            validator.validate(record("fabio", "", "IT")).join();
+            Assert.fail();
+        } catch (CompletionException e) {
+            Assert.assertEquals(IllegalStateException.class, e.getCause().getClass());
+            Assert.assertTrue(e.getCause().getMessage().contains("gave back null"));
+        }
+    }
+
+    @Test
+    public void givenCustomRuleRejection_MetricsCountTheRecordAsRejected() {
+        ValidationMetrics metrics = new ValidationMetrics();
+        AsyncValidator async = new AsyncValidator(Validator.compile(rules()).withMetrics(metrics))
+                .withRule("username", CustomRule.of("can not start with admin", new Predicate<String>() {
+                    @Override
+                    public boolean test(String value) {
+                        return !value.startsWith("admin");
+                    }
+                }));
+        Assert.assertEquals(false, async.validate(record("admin2", "", "IT")).join().isGood());
+        Assert.assertEquals(true, async.validate(record("fabio", "", "IT")).join().isGood());
+        Assert.assertEquals(2, metrics.getCalls());
+        Assert.assertEquals(1, metrics.getRejections());
+        Assert.assertEquals(1, metrics.getFailures(ErrorCode.CUSTOM));
+    }
+}
@@ -0,0 +1,64 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class BatchValidatorTest {
+
+    private static Validator rowValidator() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("code", "required|alphanumerical|maxlen,10");
+        rules.put("quantity", "required|integer|maxnumeric,1000");
+        return Validator.compile(rules);
+    }
+
+    private static List<Map<String, String>> rows(int count) {
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HashMap<String, String> row = new HashMap<String, String>();
+            row.put("code", "C" + i);
+            row.put("quantity", String.valueOf(i % 1500));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void givenManyRecords_ResultsAreInTheSameOrder() {
+        List<Map<String, String>> rows = rows(20000);
+        List<ValidationResult> results = new BatchValidator(rowValidator()).validate(rows);
+        Assert.assertEquals(rows.size(), results.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Assert.assertEquals(i % 1500 <= 1000, results.get(i).isGood());
+            Assert.assertEquals("C" + i, results.get(i).getCleanValue("code"));
+        }
+    }
+
+    @Test
+    public void givenIterator_RecordsAreValidatedInChunks() {
+        List<Map<String, String>> rows = rows(2500);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            BatchValidator batch = new BatchValidator(rowValidator(), pool, ValidationMode.FAIL_FAST);
+            List<ValidationResult> results = batch.validate(rows.iterator(), 1000);
+            Assert.assertEquals(rows.size(), results.size());
+            for (int i = 0; i < rows.size(); i++) {
+                Assert.assertEquals(i % 1500 <= 1000, results.get(i).isGood());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void givenNoRecords_NoResults() {
+        Assert.assertEquals(0, new BatchValidator(rowValidator()).validate(new ArrayList<Map<String, String>>()).size());
+    }
+}
@@ -0,0 +1,96 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class CharClassesTest {
+
+    private static final String RE_INTEGER = "(?=.*[^ ])[0-9]+";
+    private static final String RE_ONLYNUMERIC = "(?=.*[^ ])[0-9\\., ]+";
+    private static final String RE_ONLYALPHA = "(?=.*[^ ])[a-zA-ZÀ-ÿ\\?;\\.!@€£$&\\+=*\\{\\}\\[\\]\\(\\)\\-_\\r\\n\\t\\/,: ]+";
+    private static final String RE_ALPHANUMERIC = "^[a-zA-ZÀ-ÿ0-9\\?;\\.!@€£$&\\+=*\\{\\}\\[\\]\\(\\)\\-_\\r\\n\\t\\/,: ]*$";
+
+    private static void assertSameAsRegex(String value) {
+        Assert.assertEquals(value, value.matches(RE_INTEGER), CharClasses.isInteger(value));
+        Assert.assertEquals(value, value.matches(RE_ONLYNUMERIC), CharClasses.isOnlyNumeric(value));
+        Assert.assertEquals(value, value.matches(RE_ONLYALPHA), CharClasses.isOnlyAlpha(value));
+        Assert.assertEquals(value, value.matches(RE_ALPHANUMERIC), CharClasses.isAlphanumeric(value));
+    }
+
+    @Test
+    public void givenEveryCharacter_ScannersAgreeWithRegularExpressions() {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            assertSameAsRegex(String.valueOf((char) c));
+            assertSameAsRegex("a" + (char) c);
+            assertSameAsRegex(" " + (char) c);
+        }
+    }
+
+    @Test
+    public void givenRandomStrings_ScannersAgreeWithRegularExpressions() {
+        String alphabet = "0123456789 .,:aZèÿ€£\r\n\t?!-_#%\u0085 ";
+        Random random = new Random(7);
+        for (int i = 0; i < 50000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = random.nextInt(8);
+            for (int k = 0; k < n; k++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertSameAsRegex(sb.toString());
+        }
+    }
+
+    @Test
+    public void givenSpecialValues_ScannersAgreeWithRegularExpressions() {
+        String[] values = {"", " ", "   ", "12:45", "12:45a", "1:45", "1234.56", "1.234,56", "Hello @  123", "\n", " \n "};
+        for (String value : values) {
+            assertSameAsRegex(value);
+        }
+    }
+
+    @Test
+    public void givenRandomStrings_SummaryIsTheSameOfTheTable() {
+        String alphabet = "0123456789 .,:aZèÿ€£\r\n\t?!-_#%\u0085 ~@[`{";
+        int[] wanted = {0, CharClasses.DIGIT, CharClasses.NUMERIC, CharClasses.ALPHA, CharClasses.ALPHANUMERIC,
+                CharClasses.ALPHA | CharClasses.DIGIT, CharClasses.ALL};
+        Random random = new Random(11);
+        for (int i = 0; i < 50000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = random.nextInt(14);
+            // mostly digits or letters, as the values of a column
+            String chars = random.nextBoolean() ? alphabet : random.nextBoolean() ? "0123456789" : "abcXYZ ";
+            for (int k = 0; k < n; k++) {
+                sb.append(chars.charAt(random.nextInt(chars.length())));
+            }
+            String value = sb.toString();
+            int classes = CharClasses.ALL;
+            boolean blank = true;
+            boolean notOnlySpaces = false;
+            for (int k = 0; k < n; k++) {
+                classes &= CharClasses.classesOf(value.charAt(k));
+                blank &= value.charAt(k) <= ' ';
+                notOnlySpaces |= value.charAt(k) != ' ';
+            }
+            for (int w : wanted) {
+                int summary = CharClasses.summaryOf(value, w);
+                Assert.assertEquals(value, (classes & w) == w, (summary & w) == w);
+                if ((classes & w) == w) {
+                    Assert.assertEquals(value, classes & w, summary & w);
+                    Assert.assertEquals(value, blank, (summary & CharClasses.BLANK) != 0);
+                    Assert.assertEquals(value, notOnlySpaces, (summary & CharClasses.NOT_ONLY_SPACES) != 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void givenBoolean_OnlyTrueAndFalseAreAccepted() {
+        Assert.assertEquals(true, CharClasses.isBoolean("true"));
+        Assert.assertEquals(true, CharClasses.isBoolean("false"));
+        Assert.assertEquals(false, CharClasses.isBoolean("True"));
+        Assert.assertEquals(false, CharClasses.isBoolean(""));
+    }
+}
@@ -0,0 +1,96 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+public class CheckOrderTest {
+
+    private static final String[] RULES = {
+            "alphanumerical|maxlen,5", "required|onlyalpha|exactlen,3", "maxlen,20|integer|time", "onlynumeric|calendardate",
+            "required|minnumeric,10|maxnumeric,100|maxlen,3", "boolean|onlyalpha", "mysqldate|alphanumerical|minlen,10"
+    };
+
+    private static final String[] VALUES = {
+            "", " ", "a", "abc", "Hello", "12", "100", "1000", "true", "2/5/2017", "2017-05-02", "12:45", "<b>",
+            "abcdefghijklmnopqrstuvwxyz", "1.5", " 42 "
+    };
+
+    /**
+     * The checks one after the other in the order they have always been applied
+     */
+    private static ErrorCode originalOrder(CompiledRule rule, String value) {
+        for (CompiledRule.Check c : rule.getChecks()) {
+            ErrorCode code = rule.fails(c, value);
+            if (code != null) {
+                return code;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void givenRuleString_CheapestChecksComeFirst() {
+        CompiledRule rule = CompiledRule.compile("alphanumerical|minnumeric,1|maxnumeric,9|required|maxlen,10");
+        CompiledRule.Check[] order = rule.getCostOrder();
+        Assert.assertEquals(4, order.length);
+        Assert.assertEquals(CompiledRule.Check.MAXLEN, order[0]);
+        Assert.assertEquals(CompiledRule.Check.REQUIRED, order[1]);
+        Assert.assertEquals(CompiledRule.Check.ALPHANUMERIC, order[2]);
+        Assert.assertEquals(CompiledRule.Check.MINNUMERIC, order[3]);
+    }
+
+    @Test
+    public void givenCostOrder_ReportedErrorIsTheOriginalOne() {
+        for (String source : RULES) {
+            CompiledRule rule = CompiledRule.compile(source);
+            for (String value : VALUES) {
+                Assert.assertEquals(source + " / " + value, originalOrder(rule, value), rule.check(value));
+            }
+        }
+        // time is cheaper than integer and it fails too, integer is still the error
+        Assert.assertEquals(ErrorCode.INTEGER, CompiledRule.compile("maxlen,20|integer|time").check("Hello"));
+    }
+
+    @Test
+    public void givenRejectingCheck_AdaptiveOrderMovesItFirst() {
+        CompiledRule rule = CompiledRule.compile("maxlen,20|integer|time");
+        AdaptiveCheckOrder order = new AdaptiveCheckOrder(rule);
+        Assert.assertEquals(CompiledRule.Check.MAXLEN, order.getOrder()[0]);
+        // the calls are summed for a random sample of the values, the reorder comes soon after PERIOD
+        for (int i = 0; i < 2 * AdaptiveCheckOrder.PERIOD && order.getOrder()[0] == CompiledRule.Check.MAXLEN; i++) {
+            Assert.assertEquals(ErrorCode.INTEGER, order.check("12:45"));
+        }
+        Assert.assertEquals(CompiledRule.Check.INTEGER, order.getOrder()[0]);
+        Assert.assertEquals(ErrorCode.INTEGER, order.check("Hello"));
+        Assert.assertEquals(ErrorCode.MAXLEN, order.check("abcdefghijklmnopqrstuvwxyz"));
+        Assert.assertEquals(ErrorCode.TIME, order.check("1245"));
+    }
+
+    @Test
+    public void givenAdaptiveValidator_ResultsDoNotChange() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        for (int i = 0; i < RULES.length; i++) {
+            rules.put("field" + i, RULES[i]);
+        }
+        Validator fixed = Validator.compile(rules);
+        Validator adaptive = fixed.withAdaptiveCheckOrder();
+        Assert.assertEquals(true, adaptive.isAdaptive());
+        Assert.assertSame(adaptive, adaptive.withAdaptiveCheckOrder());
+
+        Random random = new Random(5);
+        for (int n = 0; n < 3 * AdaptiveCheckOrder.PERIOD; n++) {
+            HashMap<String, String> values = new HashMap<String, String>();
+            for (int i = 0; i < RULES.length; i++) {
+                values.put("field" + i, VALUES[random.nextInt(VALUES.length)]);
+            }
+            ValidationResult expected = fixed.validate(values);
+            ValidationResult actual = adaptive.validate(values);
+            Assert.assertEquals(expected.isGood(), actual.isGood());
+            Assert.assertEquals(expected.getErrors(), actual.getErrors());
+        }
+    }
+}
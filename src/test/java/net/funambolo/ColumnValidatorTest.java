@@ -0,0 +1,74 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Random;
+
+public class ColumnValidatorTest {
+
+    private static final String[] RULES = {
+            "required|integer|maxlen,10", "onlynumeric|minlen,2", "required|alphanumerical|exactlen,5", "onlyalpha",
+            "integer|minnumeric,10|maxnumeric,100", "required|calendardate", "alphanumerical|maxlen,12|time", "boolean", "maxlen,4"
+    };
+
+    private static final String[] VALUES = {
+            "", " ", "    ", "\t", "0", "42", "00042", "4,2", " 1.5 ", "1234567890", "12345678901", "Hello", "Hello World",
+            "città", "€uro", "a<b", "2/5/2017", "12:45", "true", "Z9_a!", "\u0085", "😀"
+    };
+
+    private static String[] randomColumn(Random random, int size) {
+        String[] column = new String[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = random.nextInt(50) == 0 ? null : VALUES[random.nextInt(VALUES.length)];
+        }
+        return column;
+    }
+
+    @Test
+    public void givenRandomColumns_FailuresAreTheValuesTheValidatorRejects() {
+        Random random = new Random(25);
+        for (String source : RULES) {
+            HashMap<String, String> rules = new HashMap<String, String>();
+            rules.put("field", source);
+            Validator validator = Validator.compile(rules).withMaxValueLength(11);
+            ColumnValidator column = new ColumnValidator(validator, "field");
+            String[] values = randomColumn(random, 1000);
+            BitSet failures = column.validate(values);
+            Assert.assertEquals(failures, column.validate(new LinkedList<String>(Arrays.asList(values))));
+            for (int i = 0; i < values.length; i++) {
+                HashMap<String, String> row = new HashMap<String, String>();
+                row.put("field", values[i] == null ? "" : values[i]);
+                ValidationResult result = validator.validate(row);
+                Assert.assertEquals(source + " / " + values[i], !result.isGood(), failures.get(i));
+                Assert.assertEquals(source + " / " + values[i], result.isGood() ? null : result.getValidationErrors().get(0).getCode(),
+                        column.check(values[i]));
+            }
+        }
+    }
+
+    @Test
+    public void givenRuleString_EveryBadValueIsInTheBitmap() {
+        ColumnValidator quantities = new ColumnValidator("required|integer|maxlen,10");
+        BitSet failures = quantities.validate(new String[]{"12", "", "1a", "12345678901", "0012", " 12", null});
+        Assert.assertEquals(5, failures.cardinality());
+        Assert.assertEquals(1, failures.nextSetBit(0));
+        Assert.assertEquals(false, failures.get(4));
+        Assert.assertEquals(ErrorCode.INTEGER, quantities.check("1a"));
+        Assert.assertEquals(ErrorCode.MAXLEN, quantities.check("12345678901"));
+        Assert.assertEquals(ErrorCode.REQUIRED, quantities.check(null));
+        Assert.assertEquals(0, quantities.validate(new String[0]).length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenUnknownField_ColumnValidatorIsNotCreated() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("field", "integer");
+        new ColumnValidator(Validator.compile(rules), "other");
+    }
+}
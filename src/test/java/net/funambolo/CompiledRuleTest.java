@@ -0,0 +1,72 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+public class CompiledRuleTest {
+
+    @Test
+    public void givenNullRule_CompiledRuleIsNull() {
+        Assert.assertNull(CompiledRule.compile(null));
+    }
+
+    @Test
+    public void givenRuleString_ChecksFollowTheOriginalOrder() {
+        CompiledRule rule = CompiledRule.compile("maxlen,10|required|integer");
+        CompiledRule.Check[] checks = rule.getChecks();
+        Assert.assertEquals(3, checks.length);
+        Assert.assertEquals(CompiledRule.Check.REQUIRED, checks[0]);
+        Assert.assertEquals(CompiledRule.Check.MAXLEN, checks[1]);
+        Assert.assertEquals(CompiledRule.Check.INTEGER, checks[2]);
+    }
+
+    @Test
+    public void givenRepeatedBound_LastOneWins() {
+        CompiledRule rule = CompiledRule.compile("maxlen,3|maxlen,|maxlen,5");
+        Assert.assertNull(rule.check("Hello"));
+        Assert.assertEquals(ErrorCode.MAXLEN, rule.check("Hello!"));
+        Assert.assertEquals("5", rule.error("name", ErrorCode.MAXLEN, "Hello!").getBound());
+    }
+
+    @Test
+    public void givenCheckbox_MissingValueDependsOnType() {
+        Assert.assertEquals("0", CompiledRule.compile("checkbox|integer").missingCheckboxValue());
+        Assert.assertEquals("", CompiledRule.compile("checkbox|alphanumerical").missingCheckboxValue());
+    }
+
+    @Test
+    public void givenSameRuleString_RuleSetSharesTheCompiledRule() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("first", "required|integer");
+        rules.put("second", "required|integer");
+        rules.put("third", null);
+        RuleSet ruleSet = RuleSet.compile(rules);
+        Assert.assertSame(ruleSet.get("first"), ruleSet.get("second"));
+        Assert.assertNull(ruleSet.get("third"));
+        Assert.assertEquals(3, ruleSet.size());
+    }
+
+    @Test
+    public void givenPrecompiledRuleSet_WashingMachineUsesIt() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("name", "required|maxlen,5");
+        RuleSet ruleSet = RuleSet.compile(rules);
+
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", "Hello");
+        WashingMachine wm = new WashingMachine();
+        wm.setValues(values);
+        wm.setRuleSet(ruleSet);
+        Assert.assertEquals(true, wm.isGood());
+
+        values = new HashMap<String, String>();
+        values.put("name", "Hello!");
+        wm = new WashingMachine();
+        wm.setValues(values);
+        wm.setRuleSet(ruleSet);
+        Assert.assertEquals(false, wm.isGood());
+    }
+}
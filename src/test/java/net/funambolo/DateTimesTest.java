@@ -0,0 +1,83 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.HashMap;
+
+public class DateTimesTest {
+
+    private static final DateTimeFormatter MYSQL = DateTimeFormatter.ofPattern("uuuu-MM-dd").withResolverStyle(ResolverStyle.STRICT);
+
+    @Test
+    public void givenImpossibleDates_TheyAreNotValid() {
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseCalendarDate("31/02/2017"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseCalendarDate("29/02/2017"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseCalendarDate("31/04/2017"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseCalendarDate("0/5/2017"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseCalendarDate("22/13/2017"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseCalendarDate("22/05/17"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseCalendarDate("22.05.2017"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseCalendarDate("222/5/2017"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseMySqlDate("2017-13-99"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseMySqlDate("2017-02-29"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseMySqlDate("2017-2-28"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseTime("99:99"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseTime("24:00"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseTime("12:60"));
+        Assert.assertEquals(DateTimes.NO_VALUE, DateTimes.parseTime("1:45"));
+    }
+
+    @Test
+    public void givenValidDates_TheyArePacked() {
+        Assert.assertEquals(20170522, DateTimes.parseCalendarDate("22/05/2017"));
+        Assert.assertEquals(20170502, DateTimes.parseCalendarDate("2/5/2017"));
+        Assert.assertEquals(20170502, DateTimes.parseCalendarDate("02-5/2017"));
+        Assert.assertEquals(20160229, DateTimes.parseCalendarDate("29/02/2016"));
+        Assert.assertEquals(20000229, DateTimes.parseMySqlDate("2000-02-29"));
+        Assert.assertEquals(20140402, DateTimes.parseMySqlDate("2014-04-02"));
+        Assert.assertEquals(0, DateTimes.parseTime("00:00"));
+        Assert.assertEquals(23 * 60 + 59, DateTimes.parseTime("23:59"));
+    }
+
+    @Test
+    public void givenEveryDayOfFourHundredYears_ParserAgreesWithLocalDate() {
+        for (int year = 1900; year < 2300; year++) {
+            for (int month = 1; month <= 13; month++) {
+                for (int day = 0; day <= 32; day++) {
+                    String value = String.format("%04d-%02d-%02d", year, month, day);
+                    int expected;
+                    try {
+                        LocalDate date = LocalDate.parse(value, MYSQL);
+                        expected = date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+                    } catch (DateTimeParseException e) {
+                        expected = DateTimes.NO_VALUE;
+                    }
+                    Assert.assertEquals(value, expected, DateTimes.parseMySqlDate(value));
+                    Assert.assertEquals(value, expected, DateTimes.parseCalendarDate(day + "/" + month + "/" + year));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void givenImpossibleDate_FieldIsNotGood() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("birthday", "required|calendardate");
+        rules.put("created", "mysqldate");
+        rules.put("start", "time");
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("birthday", "31/02/2017");
+        values.put("created", "2017-13-99");
+        values.put("start", "99:99");
+        ValidationResult result = Validator.compile(rules).validate(values);
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals(3, result.getErrors().size());
+        Assert.assertEquals(0, result.getCleanDate("birthday"));
+    }
+}
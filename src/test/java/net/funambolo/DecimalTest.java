@@ -0,0 +1,80 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Random;
+
+public class DecimalTest {
+
+    private static ErrorCode check(String value, String min, String max) {
+        return Decimal.check(value, min == null ? null : Decimal.parse(min), max == null ? null : Decimal.parse(max));
+    }
+
+    @Test
+    public void givenSeparators_DecimalAndGroupsAreRecognised() {
+        Assert.assertNull(check("1.234,56", "1234.56", "1234.56"));
+        Assert.assertNull(check("1,234.56", "1234.56", "1234.56"));
+        Assert.assertNull(check("12,5", "12.5", "12.5"));
+        Assert.assertNull(check("1.234.567", "1234567", "1234567"));
+        Assert.assertNull(check("1,234,567.5", "1234567.5", "1234567.5"));
+        Assert.assertNull(check("-0,50", "-0.5", "-0.5"));
+        Assert.assertNull(check("+007", "7", "7"));
+        Assert.assertNull(check("100.000,00", "100000", "100000"));
+    }
+
+    @Test
+    public void givenMalformedValues_TheyAreNotNumeric() {
+        String[] values = {"", "-", "+", "abc", "1.", ".5", "1..2", "1.2.3", "1,234,56", "1.2,5", "1234.567,5",
+                "1,234.567,89", " 42", "4 2", "1e5", "99999999999999999999", "0.99999999999999999999"};
+        for (String value : values) {
+            Assert.assertEquals(value, ErrorCode.NOT_NUMERIC, check(value, "0", null));
+        }
+    }
+
+    @Test
+    public void givenBounds_ValuesAreCompared() {
+        Assert.assertEquals(ErrorCode.MINNUMERIC, check("-2,51", "-2.5", "10"));
+        Assert.assertNull(check("-2,5", "-2.5", "10"));
+        Assert.assertNull(check("10", "-2.5", "10.0"));
+        Assert.assertEquals(ErrorCode.MAXNUMERIC, check("10,0001", "-2.5", "10"));
+        Assert.assertEquals(ErrorCode.MAXNUMERIC, check("9223372036854775807", null, "0.5"));
+        Assert.assertEquals(ErrorCode.MINNUMERIC, check("-9223372036854775807", "-0.5", null));
+        Assert.assertNull(check("0.000000000000000001", "0", "0.000000000000000001"));
+    }
+
+    @Test
+    public void givenRandomNumbers_ComparisonAgreesWithBigDecimal() {
+        Random random = new Random(3);
+        for (int n = 0; n < 100000; n++) {
+            BigDecimal value = BigDecimal.valueOf(random.nextLong() % 100000000000L, random.nextInt(10));
+            BigDecimal bound = BigDecimal.valueOf(random.nextInt(2000000) - 1000000, random.nextInt(6));
+            String text = random.nextBoolean() ? value.toPlainString() : value.toPlainString().replace('.', ',');
+            ErrorCode expected = value.compareTo(bound) < 0 ? ErrorCode.MINNUMERIC : null;
+            Assert.assertEquals(text + " >= " + bound, expected, check(text, bound.toPlainString(), null));
+            expected = value.compareTo(bound) > 0 ? ErrorCode.MAXNUMERIC : null;
+            Assert.assertEquals(text + " <= " + bound, expected, check(text, null, bound.toPlainString()));
+        }
+    }
+
+    @Test
+    public void givenDecimalRules_FieldsAreChecked() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("price", "required|onlynumeric|minnumeric,0.01|maxnumeric,1234.56");
+        rules.put("temperature", "minnumeric,-40|maxnumeric,-0.5");
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("price", "1.234,56");
+        values.put("temperature", "-12,5");
+        Assert.assertEquals(true, Validator.compile(rules).validate(values).isGood());
+
+        values.put("price", "1.234,57");
+        values.put("temperature", "0");
+        ValidationResult result = Validator.compile(rules).validate(values);
+        Assert.assertEquals(2, result.getErrors().size());
+        Assert.assertTrue(result.getErrors().contains("The price field needs to less then 1234.56"));
+        Assert.assertTrue(result.getErrors().contains("The temperature field needs to less then -0.5"));
+    }
+}
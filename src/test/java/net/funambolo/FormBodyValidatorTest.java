@@ -0,0 +1,208 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class FormBodyValidatorTest {
+
+    private static final String[] VALUES = {
+            "", " ", "   ", "Fabio", "Fabio Mattei", "città", "42", " 42 ", "4.2", "abc123", "<script>x</script>", "€ 5",
+            "2/5/2017", "12:45", "true", "a&b=c", "😀", "toolongtoolongtoolongtoolong", "0123456789"
+    };
+
+    private static HashMap<String, String> rules() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("name", "required|onlyalpha|maxlen,20");
+        rules.put("city", "alphanumerical|minlen,3");
+        rules.put("age", "required|integer|maxnumeric,150");
+        rules.put("price", "onlynumeric|exactlen,3");
+        rules.put("code", "required|alphanumerical|exactlen,10");
+        rules.put("privacy", "checkbox|boolean");
+        rules.put("colors", "onlyalpha|maxlen,10");
+        return rules;
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    private static ValidationResult expected(Validator validator, Map<String, List<String>> form) {
+        Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+        for (Map.Entry<String, List<String>> entry : form.entrySet()) {
+            parameters.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+        }
+        return validator.validate(ParameterSource.of(parameters), ValidationMode.COLLECT_ALL);
+    }
+
+    @Test
+    public void givenRandomBodies_ResultIsTheSameOfTheDecodedParameters() throws Exception {
+        Validator validator = Validator.compile(rules()).withMaxValueLength(25);
+        FormBodyValidator bodies = new FormBodyValidator(validator);
+        String[] fields = rules().keySet().toArray(new String[0]);
+        Random random = new Random(29);
+        for (int n = 0; n < 3000; n++) {
+            Map<String, List<String>> form = new LinkedHashMap<String, List<String>>();
+            StringBuilder body = new StringBuilder();
+            int count = random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                String field = random.nextInt(10) == 0 ? "unknown" : fields[random.nextInt(fields.length)];
+                String value = VALUES[random.nextInt(VALUES.length)];
+                if (!form.containsKey(field)) {
+                    form.put(field, new ArrayList<String>());
+                }
+                form.get(field).add(value);
+                body.append(body.length() == 0 ? "" : "&").append(encode(field)).append('=').append(encode(value));
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.US_ASCII);
+            ValidationResult expected = expected(validator, form);
+            ValidationResult fromBuffer = bodies.validate(ByteBuffer.wrap(bytes), ValidationMode.COLLECT_ALL);
+            ValidationResult fromStream = bodies.validate(new ByteArrayInputStream(bytes), ValidationMode.COLLECT_ALL);
+            for (ValidationResult actual : new ValidationResult[]{fromBuffer, fromStream}) {
+                Assert.assertEquals(body.toString(), expected.isGood(), actual.isGood());
+                Assert.assertEquals(body.toString(), expected.getErrors(), actual.getErrors());
+                Assert.assertEquals(body.toString(), expected.getCleanValues(), actual.getCleanValues());
+                for (String field : fields) {
+                    Assert.assertEquals(expected.getAllCleanValues(field), actual.getAllCleanValues(field));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void givenEncodings_ValuesAreDecoded() {
+        FormBodyValidator bodies = new FormBodyValidator(Validator.compile(rules()));
+        String body = "name=Fabio+Mattei&city=citt%C3%A0&age=042&price=4%2C2&colors=red&colors=GREEN&privacy=true";
+        ValidationResult result = bodies.validate(ByteBuffer.wrap(body.getBytes(StandardCharsets.US_ASCII)), ValidationMode.COLLECT_ALL);
+        Assert.assertEquals(result.getErrors().toString(), true, result.isGood());
+        Assert.assertEquals("Fabio Mattei", result.getCleanValue("name"));
+        Assert.assertEquals("città", result.getCleanValue("city"));
+        Assert.assertEquals(42, result.getCleanLong("age"));
+        Assert.assertEquals("4,2", result.getCleanValue("price"));
+        Assert.assertEquals(2, result.getAllCleanValues("colors").size());
+        Assert.assertEquals(true, result.getCleanBoolean("privacy"));
+    }
+
+    @Test
+    public void givenBadEncoding_FieldIsMalformed() {
+        FormBodyValidator bodies = new FormBodyValidator(Validator.compile(rules()));
+        String[] bodies_ = {"name=Fab%ZZio", "name=Fabio%", "name=Fabio%4", "name=%C3", "name=%C3%28", "name=%ED%A0%80", "name=%C0%AF", "name=%F4%90%80%80"};
+        for (String body : bodies_) {
+            ValidationResult result = bodies.validate(ByteBuffer.wrap(body.getBytes(StandardCharsets.US_ASCII)), ValidationMode.COLLECT_ALL);
+            Assert.assertEquals(body, 1, result.getValidationErrors().size());
+            Assert.assertEquals(body, ErrorCode.MALFORMED, result.getValidationErrors().get(0).getCode());
+        }
+        ValidationResult result = bodies.validate(ByteBuffer.wrap("name=Fab%4&age=1".getBytes(StandardCharsets.US_ASCII)), ValidationMode.COLLECT_ALL);
+        Assert.assertEquals("The name field is not correctly encoded", result.getErrors().get(0));
+        Assert.assertEquals(1, result.getErrors().size());
+    }
+
+    /**
+     * A value of size bytes, 'a' repeated, after the given prefix
+     */
+    private static InputStream hugeValue(final String prefix, final long size, final long[] read) {
+        final byte[] head = prefix.getBytes(StandardCharsets.US_ASCII);
+        return new InputStream() {
+            private long position;
+
+            @Override
+            public int read() {
+                if (position >= head.length + size) {
+                    return -1;
+                }
+                read[0]++;
+                int b = position < head.length ? head[(int) position] : 'a';
+                position++;
+                return b;
+            }
+        };
+    }
+
+    @Test
+    public void givenHugeValue_ItIsRejectedWithItsLength() throws IOException {
+        FormBodyValidator bodies = new FormBodyValidator(Validator.compile(rules()));
+        long[] read = new long[1];
+        ValidationResult result = bodies.validate(hugeValue("age=1&name=", 50000000, read), ValidationMode.COLLECT_ALL);
+        Assert.assertEquals(1, result.getValidationErrors().size());
+        ValidationError error = result.getValidationErrors().get(0);
+        Assert.assertEquals(ErrorCode.MAXLEN, error.getCode());
+        Assert.assertEquals(50000000, error.getLength());
+        Assert.assertEquals(1, result.getCleanLong("age"));
+
+        // with FAIL_FAST the body is read only up to the end of the first bad field
+        read[0] = 0;
+        result = bodies.validate(hugeValue("age=x&name=", 50000000, read), ValidationMode.FAIL_FAST);
+        Assert.assertEquals("The age field may only contain integer number", result.getErrors().get(0));
+        Assert.assertTrue(read[0] < 100000);
+    }
+
+    @Test
+    public void givenBlankTooLongValue_RequiredIsReported() {
+        FormBodyValidator bodies = new FormBodyValidator(Validator.compile(rules()).withMaxValueLength(100));
+        StringBuilder spaces = new StringBuilder("name=");
+        for (int i = 0; i < 50; i++) {
+            spaces.append('+');
+        }
+        ValidationResult result = bodies.validate(ByteBuffer.wrap(spaces.toString().getBytes(StandardCharsets.US_ASCII)), ValidationMode.COLLECT_ALL);
+        Assert.assertEquals(ErrorCode.REQUIRED, result.getValidationErrors().get(0).getCode());
+
+        for (int i = 0; i < 60; i++) {
+            spaces.append('+');
+        }
+        result = bodies.validate(ByteBuffer.wrap(spaces.toString().getBytes(StandardCharsets.US_ASCII)), ValidationMode.COLLECT_ALL);
+        Assert.assertEquals(ErrorCode.TOO_LONG, result.getValidationErrors().get(0).getCode());
+        Assert.assertEquals("The name field can not be longer than 100 character", result.getErrors().get(0));
+    }
+
+    @Test
+    public void givenNullFieldName_BodiesAreValidated() {
+        HashMap<String, String> rules = rules();
+        rules.put(null, "integer");
+        FormBodyValidator bodies = new FormBodyValidator(Validator.compile(rules));
+        ValidationResult result = bodies.validate(ByteBuffer.wrap("name=Fabio&age=40".getBytes(StandardCharsets.US_ASCII)), ValidationMode.COLLECT_ALL);
+        Assert.assertEquals(result.getErrors().toString(), true, result.isGood());
+        Assert.assertEquals("Fabio", result.getCleanValue("name"));
+    }
+
+    @Test
+    public void givenFailFastRejection_AcceptedValuesAreBlanked() {
+        HashMap<String, String> rules = new LinkedHashMap<String, String>();
+        rules.put("city", "maxlen,100");
+        rules.put("age", "required|integer|maxnumeric,150");
+        Validator validator = Validator.compile(rules);
+        Assert.assertTrue(validator.getRuleSet().ordinalOf("city") < validator.getRuleSet().ordinalOf("age"));
+        FormBodyValidator bodies = new FormBodyValidator(validator);
+        // the age is found not good only at the end, after the city has been accepted
+        String body = "city=Roma%3Cscript%3Ealert(1)%3C%2Fscript%3E&age=200";
+        ValidationResult result = bodies.validate(ByteBuffer.wrap(body.getBytes(StandardCharsets.US_ASCII)), ValidationMode.FAIL_FAST);
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals("", result.getCleanValue("city"));
+    }
+
+    @Test
+    public void givenLongUnknownNameStartingWithAField_TheFieldIsKept() {
+        FormBodyValidator bodies = new FormBodyValidator(Validator.compile(rules()));
+        // privacy is the longest field name, privacyPolicy is kept as privacy plus the dots
+        String body = "privacy=true&privacyPolicy=1&name=Fabio&age=40&code=abcde12345";
+        ValidationResult result = bodies.validate(ByteBuffer.wrap(body.getBytes(StandardCharsets.US_ASCII)), ValidationMode.COLLECT_ALL);
+        Assert.assertEquals(1, result.getValidationErrors().size());
+        Assert.assertEquals("privacy...", result.getValidationErrors().get(0).getField());
+        Assert.assertEquals(ErrorCode.NO_RULE, result.getValidationErrors().get(0).getCode());
+        Assert.assertEquals("true", result.getCleanValues().get("privacy"));
+        Assert.assertEquals(true, result.getCleanBoolean("privacy"));
+    }
+}
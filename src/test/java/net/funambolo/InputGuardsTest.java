@@ -0,0 +1,114 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class InputGuardsTest {
+
+    private static String repeat(String piece, int times) {
+        StringBuilder sb = new StringBuilder(piece.length() * times);
+        for (int i = 0; i < times; i++) {
+            sb.append(piece);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void givenValueLongerThanTheLimit_FieldIsRejectedBeforeTheChecks() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("comment", "required|alphanumerical");
+        Validator validator = Validator.compile(rules).withMaxValueLength(10);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("comment", "<<<<<<<<<<<<<<<<<<<<");
+        ValidationResult result = validator.validate(values);
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals(ErrorCode.TOO_LONG, result.getValidationErrors().get(0).getCode());
+        Assert.assertEquals("The comment field can not be longer than 10 character", result.getErrors().get(0));
+
+        values.put("comment", "Hello");
+        Assert.assertEquals(true, validator.validate(values).isGood());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenNegativeLimit_ValidatorIsNotCreated() {
+        Validator.compile(new HashMap<String, String>()).withMaxValueLength(-1);
+    }
+
+    @Test
+    public void givenPathologicalValue_MatchingStopsAtTheBudget() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("comment", "maxlen,1000000");
+        rules.put("name", "alphanumerical");
+        Validator validator = Validator.compile(rules).withMatchTimeBudget(50, TimeUnit.MILLISECONDS);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("comment", "=" + repeat("onload", 100000));
+        values.put("name", "Fabio");
+
+        long start = System.nanoTime();
+        ValidationResult result = validator.validate(values);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals(1, result.getErrors().size());
+        Assert.assertEquals(ErrorCode.TIMEOUT, result.getValidationErrors().get(0).getCode());
+        Assert.assertEquals("", result.getCleanValue("comment"));
+        Assert.assertTrue("took " + elapsed + " ms", elapsed < 2000);
+    }
+
+    @Test
+    public void givenBudgetAndFailFast_TimeoutIsReported() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("comment", "maxlen,1000000");
+        WashingMachine wm = new WashingMachine();
+        wm.setValidationMode(ValidationMode.FAIL_FAST);
+        wm.setMatchTimeBudget(50, TimeUnit.MILLISECONDS);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("comment", "=" + repeat("onload", 100000));
+        wm.setValues(values);
+        wm.setRules(rules);
+        Assert.assertEquals(false, wm.isGood());
+        Assert.assertEquals("The comment field could not be checked in time", wm.getErrors().get(0));
+    }
+
+    @Test
+    public void givenKeywordsWithoutClosingCharacter_ValueIsGivenBackQuickly() {
+        String value = repeat("onload eval(", 100000);
+        long start = System.nanoTime();
+        Assert.assertSame(value, XssSanitizer.strip(value));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+
+    @Test
+    public void givenBudget_GoodValuesAreStillCleaned() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("comment", "maxlen,100");
+        Validator validator = Validator.compile(rules).withMatchTimeBudget(1, TimeUnit.SECONDS).withMaxValueLength(100);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("comment", "Hello <script>alert(1)</script>world");
+        ValidationResult result = validator.validate(values);
+        Assert.assertEquals(true, result.isGood());
+        Assert.assertEquals("Hello world", result.getCleanValue("comment"));
+    }
+
+    @Test
+    public void givenFailFastTimeout_LaterFieldsAreStillCleaned() {
+        HashMap<String, String> rules = new LinkedHashMap<String, String>();
+        rules.put("comment", "maxlen,1000000");
+        rules.put("note", "maxlen,100");
+        Validator validator = Validator.compile(rules).withMatchTimeBudget(50, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(validator.getRuleSet().ordinalOf("comment") < validator.getRuleSet().ordinalOf("note"));
+        HashMap<String, String> values = new LinkedHashMap<String, String>();
+        values.put("comment", "=" + repeat("onload", 100000));
+        values.put("note", "hi <script>alert(1)</script>");
+        ValidationResult result = validator.validate(values, ValidationMode.FAIL_FAST);
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals(ErrorCode.TIMEOUT, result.getValidationErrors().get(0).getCode());
+        Assert.assertEquals("", result.getCleanValue("comment"));
+        Assert.assertEquals("hi ", result.getCleanValue("note"));
+    }
+}
@@ -0,0 +1,80 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ParameterSourceTest {
+
+    private static Validator formValidator() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("name", "alphanumerical|maxlen,20");
+        rules.put("colors", "required|onlyalpha|maxlen,20");
+        rules.put("privacy", "checkbox|integer");
+        return Validator.compile(rules);
+    }
+
+    @Test
+    public void givenServletParameters_TheyAreValidatedInPlace() {
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("name", new String[]{" Fabio "});
+        parameters.put("colors", new String[]{"red", " green ", "blue"});
+        parameters.put("privacy", null);
+        ValidationResult result = formValidator().validate(ParameterSource.of(parameters), ValidationMode.COLLECT_ALL);
+
+        Assert.assertEquals(true, result.isGood());
+        Assert.assertEquals("Fabio", result.getCleanValue("name"));
+        Assert.assertEquals("red", result.getCleanValue("colors"));
+        Assert.assertEquals(Arrays.asList("red", "green", "blue"), result.getAllCleanValues("colors"));
+        Assert.assertEquals(Arrays.asList("Fabio"), result.getAllCleanValues("name"));
+        Assert.assertEquals("", result.getCleanValue("privacy"));
+        Assert.assertNull(parameters.get("privacy"));
+        Assert.assertEquals(" green ", parameters.get("colors")[1]);
+    }
+
+    @Test
+    public void givenOneBadValueAmongMany_FieldIsNotGood() {
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("colors", new String[]{"red", "green", "blue 2"});
+        parameters.put("unknown", new String[]{"x"});
+        ValidationResult result = formValidator().validate(ParameterSource.of(parameters), ValidationMode.COLLECT_ALL);
+
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals(2, result.getErrors().size());
+        Assert.assertEquals("colors", result.getValidationErrors().get(0).getField());
+        Assert.assertEquals("", result.getCleanValue("colors"));
+        Assert.assertEquals(Arrays.asList(""), result.getAllCleanValues("colors"));
+    }
+
+    @Test
+    public void givenFailFast_EveryValueIsCleaned() {
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("colors", new String[]{"red eval(x)", "green"});
+        ValidationResult result = formValidator().validate(ParameterSource.of(parameters), ValidationMode.FAIL_FAST);
+
+        Assert.assertEquals(true, result.isGood());
+        Assert.assertEquals(Arrays.asList("red ", "green"), result.getAllCleanValues("colors"));
+        Assert.assertEquals("red ", result.getCleanValue("colors"));
+    }
+
+    @Test
+    public void givenParameterSource_WashingMachineReadsIt() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("colors", "required|onlyalpha");
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("colors", new String[]{"red", "green"});
+        WashingMachine wm = new WashingMachine();
+        wm.setParameters(ParameterSource.of(parameters));
+        wm.setRules(rules);
+        Assert.assertEquals(true, wm.isGood());
+        Assert.assertEquals(Arrays.asList("red", "green"), wm.getAllCleanValues("colors"));
+
+        parameters.put("colors", new String[]{"red", ""});
+        Assert.assertEquals(false, wm.isGood());
+        Assert.assertEquals("The colors field is required", wm.getAllErrors().trim());
+    }
+}
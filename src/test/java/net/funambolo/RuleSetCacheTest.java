@@ -0,0 +1,136 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class RuleSetCacheTest {
+
+    private static HashMap<String, String> tenantRules(int tenant) {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("name", "required|alphanumerical|maxlen,250");
+        rules.put("custom" + tenant, "integer|maxnumeric," + tenant);
+        return rules;
+    }
+
+    @Test
+    public void givenSameContent_RuleSetIsCompiledOnce() {
+        RuleSetCache cache = new RuleSetCache(10);
+        RuleSet first = cache.compile(tenantRules(1));
+        LinkedHashMap<String, String> sameContent = new LinkedHashMap<String, String>(tenantRules(1));
+        Assert.assertSame(first, cache.compile(sameContent));
+        Assert.assertNotSame(first, cache.compile(tenantRules(2)));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1.0 / 3, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void givenChangedMap_CacheKeepsTheOldContent() {
+        RuleSetCache cache = new RuleSetCache(10);
+        HashMap<String, String> rules = tenantRules(1);
+        RuleSet first = cache.compile(rules);
+        rules.put("other", "integer");
+        RuleSet second = cache.compile(rules);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals(3, second.size());
+        Assert.assertSame(first, cache.compile(tenantRules(1)));
+    }
+
+    @Test
+    public void givenMoreVariantsThanTheSize_RecentlyUsedOnesAreKept() {
+        RuleSetCache cache = new RuleSetCache(4);
+        for (int tenant = 0; tenant < 100; tenant++) {
+            RuleSet hot = cache.compile(tenantRules(-1));
+            cache.compile(tenantRules(tenant));
+            Assert.assertSame(hot, cache.compile(tenantRules(-1)));
+            Assert.assertTrue(cache.size() <= 4);
+        }
+        Assert.assertTrue(cache.getEvictions() > 90);
+        Assert.assertTrue(cache.getHits() >= 198);
+    }
+
+    @Test
+    public void givenManyThreads_CacheStaysBounded() throws Exception {
+        final RuleSetCache cache = new RuleSetCache(50);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                final int tenant = i % 200;
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        RuleSet rules = cache.compile(tenantRules(tenant));
+                        return rules.get("custom" + tenant) != null;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertEquals(Boolean.TRUE, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(cache.size() <= 50);
+        Assert.assertEquals(1000, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    public void givenCache_WashingMachineUsesIt() {
+        RuleSetCache cache = new RuleSetCache(10);
+        for (int i = 0; i < 3; i++) {
+            HashMap<String, String> values = new HashMap<String, String>();
+            values.put("name", "Fabio");
+            values.put("custom7", "5");
+            WashingMachine wm = new WashingMachine();
+            wm.setValues(values);
+            wm.setRules(tenantRules(7), cache);
+            Assert.assertEquals(true, wm.isGood());
+        }
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void givenMapChangingWhileCompiled_RuleSetMatchesItsKey() {
+        // every read sees one field more, as a map changed by another thread
+        Map<String, String> changing = new AbstractMap<String, String>() {
+            private int reads;
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return fields(++reads).entrySet();
+            }
+        };
+        RuleSetCache cache = new RuleSetCache(10);
+        RuleSet ruleSet = cache.compile(changing);
+        Assert.assertSame(ruleSet, cache.compile(fields(ruleSet.size())));
+    }
+
+    private static HashMap<String, String> fields(int count) {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        for (int i = 0; i < count; i++) {
+            rules.put("field" + i, "integer");
+        }
+        return rules;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenZeroSize_CacheIsNotCreated() {
+        new RuleSetCache(0);
+    }
+}
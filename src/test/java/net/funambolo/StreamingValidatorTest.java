@@ -0,0 +1,210 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+public class StreamingValidatorTest {
+
+    private static Validator rowValidator() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("code", "required|alphanumerical|maxlen,10");
+        rules.put("quantity", "required|integer");
+        return Validator.compile(rules);
+    }
+
+    private static class CollectingSink implements RecordSink {
+        final List<Long> rows = new ArrayList<>();
+        final List<ValidationResult> results = new ArrayList<>();
+
+        @Override
+        public void accept(long row, Map<String, String> record, ValidationResult result) {
+            rows.add(row);
+            results.add(result);
+        }
+    }
+
+    @Test
+    public void givenCsv_RecordsGoToTheRightSink() throws Exception {
+        String csv = "code,quantity\r\nA1,10\r\n\"B\"\"2\",x\r\n\"C,\r\n3\",30\n\nD4\n";
+        CollectingSink accepted = new CollectingSink();
+        CollectingSink rejected = new CollectingSink();
+        StreamingValidator.Summary summary = new StreamingValidator(rowValidator(), 2)
+                .validate(new CsvRecordReader(new StringReader(csv)), accepted, rejected);
+
+        Assert.assertEquals(2, summary.getAccepted());
+        Assert.assertEquals(2, summary.getRejected());
+        Assert.assertEquals(Long.valueOf(1), accepted.rows.get(0));
+        Assert.assertEquals("A1", accepted.results.get(0).getCleanValue("code"));
+        Assert.assertEquals("C,\r\n3", accepted.results.get(1).getCleanValue("code"));
+        Assert.assertEquals(Long.valueOf(2), rejected.rows.get(0));
+        Assert.assertEquals(Long.valueOf(4), rejected.rows.get(1));
+    }
+
+    @Test
+    public void givenNdjson_RecordsGoToTheRightSink() throws Exception {
+        String ndjson = "{\"code\": \"A1\", \"quantity\": 10}\n\n{\"code\":\"B\\u00e8\", \"quantity\": \"x\"}\n{\"code\": \"C3\", \"quantity\": null}\n";
+        CollectingSink accepted = new CollectingSink();
+        CollectingSink rejected = new CollectingSink();
+        StreamingValidator.Summary summary = new StreamingValidator(rowValidator())
+                .validate(new NdjsonRecordReader(new StringReader(ndjson)), accepted, rejected);
+
+        Assert.assertEquals(1, summary.getAccepted());
+        Assert.assertEquals(2, summary.getRejected());
+        Assert.assertEquals("10", accepted.results.get(0).getCleanValue("quantity"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenMalformedNdjson_StreamingFails() throws Exception {
+        String ndjson = "{\"code\": \"A1\", \"quantity\": 10}\n{\"code\": [1]}\n";
+        new StreamingValidator(rowValidator()).validate(new NdjsonRecordReader(new StringReader(ndjson)),
+                new CollectingSink(), new CollectingSink());
+    }
+
+    @Test
+    public void givenCsvRecordLongerThanTheLimit_ReadingFails() {
+        String csv = "code,quantity\nA1,10\n\"" + repeat("x", 100) + "\n";
+        CsvRecordReader reader = new CsvRecordReader(new StringReader(csv), ',', 50);
+        Assert.assertEquals("A1", reader.next().get("code"));
+        try {
+            reader.hasNext();
+            Assert.fail("An unterminated quote is read to the end of the input");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("The CSV record starting at line 3 is longer than 50 characters", e.getMessage());
+        }
+    }
+
+    @Test
+    public void givenNdjsonLineLongerThanTheLimit_ReadingFails() {
+        String ndjson = "{\"code\": \"A1\"}\r\n{\"code\": \"" + repeat("x", 100) + "\"}\n";
+        NdjsonRecordReader reader = new NdjsonRecordReader(new StringReader(ndjson), 50);
+        Assert.assertEquals("A1", reader.next().get("code"));
+        try {
+            reader.hasNext();
+            Assert.fail("A line past the limit is read whole");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("The JSON line 2 is longer than 50 characters", e.getMessage());
+        }
+    }
+
+    @Test
+    public void givenSourceThrowingAThrowable_StreamingFailsWithIt() throws Exception {
+        final Throwable odd = new Throwable("neither an error nor an exception");
+        Iterator<Map<String, String>> source = new Iterator<Map<String, String>>() {
+            @Override
+            public boolean hasNext() {
+                return StreamingValidatorTest.<RuntimeException>sneakyThrow(odd);
+            }
+
+            @Override
+            public Map<String, String> next() {
+                throw new NoSuchElementException();
+            }
+        };
+        try {
+            new StreamingValidator(rowValidator()).validate(source, new CollectingSink(), new CollectingSink());
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertSame(odd, e.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> boolean sneakyThrow(Throwable t) throws T {
+        throw (T) t;
+    }
+
+    private static String repeat(String piece, int times) {
+        StringBuilder sb = new StringBuilder(piece.length() * times);
+        for (int i = 0; i < times; i++) {
+            sb.append(piece);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void givenLongSource_OnlyTheBufferIsReadAhead() throws Exception {
+        final int[] read = {0};
+        final int[] maxAhead = {0};
+        final int total = 100000;
+        Iterator<Map<String, String>> source = new Iterator<Map<String, String>>() {
+            @Override
+            public boolean hasNext() {
+                return read[0] < total;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                read[0]++;
+                HashMap<String, String> record = new HashMap<String, String>();
+                record.put("code", "A" + read[0]);
+                record.put("quantity", "1");
+                return record;
+            }
+        };
+        final int bufferSize = 16;
+        RecordSink sink = new RecordSink() {
+            @Override
+            public void accept(long row, Map<String, String> record, ValidationResult result) {
+                // read[0] is updated by the reader thread, the buffer plus the record being put bound the distance
+                maxAhead[0] = Math.max(maxAhead[0], (int) (read[0] - row));
+            }
+        };
+        StreamingValidator.Summary summary = new StreamingValidator(rowValidator(), bufferSize).validate(source, sink, sink);
+        Assert.assertEquals(total, summary.getTotal());
+        Assert.assertTrue(maxAhead[0] <= bufferSize + 2);
+    }
+
+    @Test(timeout = 10000)
+    public void givenReadThatIgnoresInterrupts_FailingSinkDoesNotHang() throws Exception {
+        final Object never = new Object();
+        Iterator<Map<String, String>> source = new Iterator<Map<String, String>>() {
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (read++ > 0) {
+                    // like a blocking socket read, the interrupt is not seen
+                    synchronized (never) {
+                        while (true) {
+                            try {
+                                never.wait();
+                            } catch (InterruptedException e) {
+                                // ignored
+                            }
+                        }
+                    }
+                }
+                HashMap<String, String> record = new HashMap<String, String>();
+                record.put("code", "A1");
+                record.put("quantity", "1");
+                return record;
+            }
+        };
+        RecordSink failing = new RecordSink() {
+            @Override
+            public void accept(long row, Map<String, String> record, ValidationResult result) {
+                throw new IllegalStateException("sink closed");
+            }
+        };
+        try {
+            new StreamingValidator(rowValidator()).validate(source, failing, failing);
+            Assert.fail("The failure of the sink is not thrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("sink closed", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+
+public class ValidationErrorTest {
+
+    private static ValidationResult validate(String rule, String value) {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("name", rule);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", value);
+        return Validator.compile(rules).validate(values);
+    }
+
+    private static String message(String rule, String value) {
+        ValidationResult result = validate(rule, value);
+        Assert.assertEquals(1, result.getErrors().size());
+        return result.getErrors().get(0);
+    }
+
+    @Test
+    public void givenFailingChecks_MessagesAreTheOriginalOnes() {
+        Assert.assertEquals("The name field is required", message("required", " "));
+        Assert.assertEquals("The name field needs to be shorter than 6 character", message("maxlen,5", "Hello!"));
+        Assert.assertEquals("The name field needs to be longer than 5 character", message("minlen,6", "Hello"));
+        Assert.assertEquals("The name field needs to be exactly 5 character in length", message("exactlen,6", "Hello"));
+        Assert.assertEquals("The name field may only contain alpha-numeric characters", message("alphanumerical", "#"));
+        Assert.assertEquals("The name field may only contain integer number", message("integer", "1.5"));
+        Assert.assertEquals("The name field may only contain a true or false value", message("boolean", "yes"));
+        Assert.assertEquals("The name field needs to be numeric", message("minnumeric,3", "aa"));
+        Assert.assertEquals("The name field needs to greater then 32", message("minnumeric,32", "20"));
+        Assert.assertEquals("The name field needs to less then 32", message("maxnumeric,32", "50"));
+        Assert.assertEquals("The name field needs to be a valid date", message("mysqldate", "2017"));
+        Assert.assertEquals("The name field needs to be a valid time", message("time", "12"));
+    }
+
+    @Test
+    public void givenFailingCheck_ErrorIsStructured() {
+        ValidationError error = validate("required|maxlen,5", "Hello world").getValidationErrors().get(0);
+        Assert.assertEquals("name", error.getField());
+        Assert.assertEquals(ErrorCode.MAXLEN, error.getCode());
+        Assert.assertEquals("5", error.getBound());
+        Assert.assertEquals(11, error.getLength());
+    }
+
+    @Test
+    public void givenManyErrors_TheyAreAppendedWithTheSeparator() throws IOException {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("a", "required");
+        rules.put("b", "required");
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("a", "");
+        values.put("b", "");
+        ValidationResult result = Validator.compile(rules).validate(values);
+
+        Assert.assertEquals("The a field is required The b field is required ", result.getAllErrors());
+        Assert.assertEquals("The a field is required<br />The b field is required<br />", result.getAllErrorsWithBr());
+        StringWriter writer = new StringWriter();
+        result.appendAllErrors(writer, "\n");
+        Assert.assertEquals("The a field is required\nThe b field is required\n", writer.toString());
+    }
+}
@@ -0,0 +1,113 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+
+public class ValidationMetricsTest {
+
+    private static HashMap<String, String> rules() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("name", "required|alphanumerical|maxlen,5");
+        rules.put("age", "integer");
+        return rules;
+    }
+
+    @Test
+    public void givenValidations_MetricsAreRecorded() {
+        ValidationMetrics metrics = new ValidationMetrics();
+        Validator validator = Validator.compile(rules()).withMetrics(metrics);
+
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", "eval(x)");
+        values.put("age", "40");
+        Assert.assertEquals(false, validator.validate(values).isGood());
+        values.put("name", "Fabio");
+        values.put("age", "forty");
+        values.put("unknown", "");
+        Assert.assertEquals(false, validator.validate(values).isGood());
+        values.remove("unknown");
+        values.put("age", "40");
+        values.put("name", "a<b");
+        Assert.assertEquals(false, validator.validate(values).isGood());
+        values.put("name", "Fab");
+        Assert.assertEquals(true, validator.validate(values).isGood());
+
+        Assert.assertEquals(4, metrics.getCalls());
+        Assert.assertEquals(3, metrics.getRejections());
+        Assert.assertEquals(1, metrics.getFailures(ErrorCode.MAXLEN));
+        Assert.assertEquals(1, metrics.getFailures(ErrorCode.INTEGER));
+        Assert.assertEquals(1, metrics.getFailures(ErrorCode.NO_RULE));
+        Assert.assertEquals(1, metrics.getFailures(ErrorCode.ALPHANUMERIC));
+        Assert.assertEquals(Long.valueOf(1), metrics.getRuleFailures().get("MAXLEN"));
+        Assert.assertNull(metrics.getRuleFailures().get("TIME"));
+        long histogram = 0;
+        for (long count : metrics.getLatencyHistogram()) {
+            histogram += count;
+        }
+        Assert.assertEquals(4, histogram);
+        Assert.assertTrue(metrics.getLatencyP99Micros() >= metrics.getLatencyP50Micros());
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getCalls());
+        Assert.assertEquals(0, metrics.getRuleFailures().size());
+    }
+
+    @Test
+    public void givenScripts_SanitizerRewritesAreCounted() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("comment", "maxlen,100");
+        ValidationMetrics metrics = new ValidationMetrics();
+        Validator validator = Validator.compile(rules).withMetrics(metrics);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("comment", "<script>alert(1)</script>Hello");
+        validator.validate(values);
+        values.put("comment", "Hello");
+        validator.validate(values);
+        Assert.assertEquals(1, metrics.getSanitizerRewrites());
+    }
+
+    @Test
+    public void givenNoMetrics_ValidatorIsTheSame() {
+        Validator validator = Validator.compile(rules());
+        Assert.assertSame(validator, validator.withMetrics(null));
+        Assert.assertNull(validator.getMetrics());
+    }
+
+    @Test
+    public void givenWashingMachine_MetricsAreSharedAndRegistered() throws Exception {
+        ValidationMetrics metrics = new ValidationMetrics();
+        ObjectName name = metrics.register("test");
+        try {
+            for (int i = 0; i < 3; i++) {
+                HashMap<String, String> values = new HashMap<String, String>();
+                values.put("name", "Fabio");
+                WashingMachine wm = new WashingMachine();
+                wm.setMetrics(metrics);
+                wm.setValues(values);
+                wm.setRules(rules());
+                Assert.assertEquals(true, wm.isGood());
+            }
+            Object calls = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Calls");
+            Assert.assertEquals(Long.valueOf(3), calls);
+
+            HashMap<String, String> values = new HashMap<String, String>();
+            values.put("name", "Fabio Mattei");
+            WashingMachine wm = new WashingMachine();
+            wm.setMetrics(metrics);
+            wm.setValues(values);
+            wm.setRules(rules());
+            Assert.assertEquals(false, wm.isGood());
+            TabularData failures = (TabularData) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RuleFailures");
+            Assert.assertEquals(1, failures.size());
+            Assert.assertEquals(Long.valueOf(1), failures.get(new Object[]{"MAXLEN"}).get("value"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ValidatorTest {
+
+    private static Validator formValidator() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("name", "required|alphanumerical|maxlen,20");
+        rules.put("age", "required|integer");
+        rules.put("privacy", "checkbox|integer");
+        return Validator.compile(rules);
+    }
+
+    @Test
+    public void givenGoodValues_ResultIsGoodAndClean() {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", "  Fabio ");
+        values.put("age", "40");
+        ValidationResult result = formValidator().validate(values);
+        Assert.assertEquals(true, result.isGood());
+        Assert.assertEquals("Fabio", result.getCleanValue("name"));
+        Assert.assertEquals(40, result.getCleanLongValue("age"));
+        Assert.assertEquals(0, result.getErrors().size());
+    }
+
+    @Test
+    public void givenMissingCheckbox_DefaultValueIsUsedAndValuesAreNotModified() {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", "Fabio");
+        values.put("age", "40");
+        values.put("privacy", null);
+        ValidationResult result = formValidator().validate(values);
+        Assert.assertEquals(true, result.isGood());
+        Assert.assertEquals("0", result.getCleanValue("privacy"));
+        Assert.assertNull(values.get("privacy"));
+    }
+
+    @Test
+    public void givenMissingField_ResultIsNotGood() {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", null);
+        values.put("unknown", "hello");
+        ValidationResult result = formValidator().validate(values);
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals(2, result.getErrors().size());
+        Assert.assertEquals("", result.getCleanValue("unknown"));
+    }
+
+    @Test
+    public void givenOneValidator_ManyThreadsGetIndependentResults() throws Exception {
+        final Validator validator = formValidator();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int n = i;
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        HashMap<String, String> values = new HashMap<String, String>();
+                        values.put("name", "user" + n);
+                        values.put("age", n % 2 == 0 ? String.valueOf(n) : "not a number");
+                        ValidationResult result = validator.validate(values);
+                        return result.isGood() == (n % 2 == 0)
+                                && result.getErrors().size() == (n % 2 == 0 ? 0 : 1)
+                                && result.getCleanValue("name").equals("user" + n);
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertEquals(Boolean.TRUE, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenFailFast_ValidationStopsAtTheFirstError() {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", "");
+        values.put("age", "not a number");
+        values.put("privacy", "not a number");
+        ValidationResult result = formValidator().validate(values, ValidationMode.FAIL_FAST);
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals(1, result.getErrors().size());
+        Assert.assertEquals(1, result.getCleanValues().size());
+    }
+
+    @Test
+    public void givenFailFastAndGoodValues_ValuesAreCleaned() {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", " Fabio eval(1) ");
+        values.put("age", "40");
+        ValidationResult result = formValidator().validate(values, ValidationMode.FAIL_FAST);
+        Assert.assertEquals(true, result.isGood());
+        Assert.assertEquals("Fabio ", result.getCleanValue("name"));
+        Assert.assertEquals("40", result.getCleanValue("age"));
+    }
+
+    @Test
+    public void givenFailFastRejection_AcceptedValuesAreBlanked() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("note", "maxlen,100");
+        rules.put("age", "required|integer");
+        ValidationMetrics metrics = new ValidationMetrics();
+        Validator validator = Validator.compile(rules).withMetrics(metrics);
+        // the note comes before the field that is not good
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        values.put("note", "hi <script>alert(1)</script>");
+        values.put("age", "not a number");
+
+        List<ValidationResult> results = new ArrayList<>();
+        results.add(validator.validate(values, ValidationMode.FAIL_FAST));
+        Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+        parameters.put("note", new String[]{values.get("note")});
+        parameters.put("age", new String[]{values.get("age")});
+        results.add(validator.validate(ParameterSource.of(parameters), ValidationMode.FAIL_FAST));
+        String[] byOrdinal = new String[2];
+        byOrdinal[validator.getRuleSet().ordinalOf("note")] = values.get("note");
+        byOrdinal[validator.getRuleSet().ordinalOf("age")] = values.get("age");
+        results.add(validator.validate(byOrdinal, ValidationMode.FAIL_FAST));
+        for (ValidationResult result : results) {
+            Assert.assertEquals(false, result.isGood());
+            Assert.assertEquals("", result.getCleanValue("note"));
+            Assert.assertEquals("", result.getCleanValues().get("note"));
+            Assert.assertEquals("", result.getCleanValuesWithPattern("no").get("note"));
+        }
+        // the sanitizer never ran
+        Assert.assertEquals(0, metrics.getSanitizerRewrites());
+        Assert.assertEquals(0, metrics.getSanitizerTimeMicros());
+
+        WashingMachine wm = new WashingMachine();
+        wm.setValidationMode(ValidationMode.FAIL_FAST);
+        wm.setValues(new HashMap<String, String>(values));
+        wm.setRules(rules);
+        Assert.assertEquals(false, wm.isGood());
+        Assert.assertEquals("", wm.getCleanValue("note"));
+    }
+
+    @Test
+    public void givenFailFast_WashingMachineReportsOneError() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("first", "required");
+        rules.put("second", "required");
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("first", "");
+        values.put("second", "");
+        WashingMachine wm = new WashingMachine();
+        wm.setValidationMode(ValidationMode.FAIL_FAST);
+        wm.setValues(values);
+        wm.setRules(rules);
+        Assert.assertEquals(false, wm.isGood());
+        Assert.assertEquals(1, wm.getErrors().size());
+    }
+
+    @Test
+    public void givenTypedRules_TypedValuesAreAvailable() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("quantity", "required|integer");
+        rules.put("price", "minnumeric,1|maxnumeric,100");
+        rules.put("privacy", "required|boolean");
+        rules.put("birthday", "required|calendardate");
+        rules.put("created", "mysqldate");
+        rules.put("start", "time");
+        rules.put("empty", "integer");
+        rules.put("huge", "integer");
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("quantity", "1234");
+        values.put("price", "99");
+        values.put("privacy", "true");
+        values.put("birthday", "2/5/2017");
+        values.put("created", "2014-04-02");
+        values.put("start", "12:45");
+        values.put("empty", "");
+        values.put("huge", "99999999999999999999");
+        ValidationResult result = Validator.compile(rules).validate(values);
+
+        Assert.assertEquals(true, result.isGood());
+        Assert.assertEquals(1234, result.getCleanLong("quantity"));
+        Assert.assertEquals(99, result.getCleanLong("price"));
+        Assert.assertEquals(true, result.getCleanBoolean("privacy"));
+        Assert.assertEquals(20170502, result.getCleanDate("birthday"));
+        Assert.assertEquals(20140402, result.getCleanDate("created"));
+        Assert.assertEquals(765, result.getCleanTime("start"));
+        Assert.assertEquals(false, result.hasTypedValue("empty"));
+        Assert.assertEquals(0, result.getCleanLong("empty"));
+        Assert.assertEquals(false, result.hasTypedValue("huge"));
+        Assert.assertEquals(-1, result.getCleanTime("missing"));
+    }
+
+    @Test
+    public void givenValuesByOrdinal_ResultIsTheSameOfTheMap() {
+        Validator validator = formValidator();
+        RuleSet rules = validator.getRuleSet();
+        String[] values = new String[rules.size()];
+        values[rules.ordinalOf("name")] = " Fabio ";
+        values[rules.ordinalOf("age")] = "40";
+        ValidationResult result = validator.validate(values, ValidationMode.COLLECT_ALL);
+        Assert.assertEquals(true, result.isGood());
+        Assert.assertEquals("Fabio", result.getCleanValue(rules.ordinalOf("name")));
+        Assert.assertEquals(40, result.getCleanLong(rules.ordinalOf("age")));
+        Assert.assertNull(result.getCleanValue(rules.ordinalOf("privacy")));
+        Assert.assertEquals(2, result.getCleanValues().size());
+        Assert.assertEquals(-1, rules.ordinalOf("unknown"));
+
+        values[rules.ordinalOf("age")] = "forty";
+        result = validator.validate(values, ValidationMode.COLLECT_ALL);
+        Assert.assertEquals(false, result.isGood());
+        Assert.assertEquals("age", result.getValidationErrors().get(0).getField());
+        Assert.assertEquals("", result.getCleanValue("age"));
+    }
+
+    @Test
+    public void givenCheckboxGroup_PrefixViewFindsTheGroup() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (int i = 1; i <= 400; i++) {
+            String field = String.format("checkbox%03d", i);
+            rules.put(field, "checkbox|integer");
+            values.put(field, i % 2 == 0 ? "1" : null);
+        }
+        rules.put("checkbo", "alphanumerical");
+        rules.put("name", "alphanumerical");
+        rules.put("mycheckbox", "alphanumerical");
+        values.put("checkbo", "a");
+        values.put("name", "b");
+        values.put("mycheckbox", "c");
+        values.put("checkbox_unknown", "d");
+        ValidationResult result = Validator.compile(rules).validate(values);
+
+        Map<String, String> group = result.getCleanValuesWithPrefix("checkbox");
+        Assert.assertEquals(401, group.size());
+        Assert.assertEquals("1", group.get("checkbox002"));
+        Assert.assertEquals("0", group.get("checkbox003"));
+        Assert.assertEquals("", group.get("checkbox_unknown"));
+        Assert.assertNull(group.get("checkbo"));
+        Assert.assertNull(group.get("mycheckbox"));
+        Assert.assertEquals("checkbox001", group.keySet().iterator().next());
+
+        HashMap<String, String> pattern = result.getCleanValuesWithPattern("checkbox");
+        Assert.assertEquals(402, pattern.size());
+        pattern.remove("mycheckbox");
+        Assert.assertEquals(pattern, group);
+
+        Assert.assertEquals(0, result.getCleanValuesWithPrefix("zzz").size());
+        Assert.assertEquals(values.size(), result.getCleanValuesWithPrefix("").size());
+    }
+
+    @Test
+    public void givenChangedFields_UpdateGivesTheSameResultOfAFullValidation() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        for (int i = 0; i < 20; i++) {
+            rules.put("field" + i, i % 2 == 0 ? "required|integer|maxnumeric,100" : "alphanumerical|maxlen,5");
+        }
+        Validator validator = Validator.compile(rules);
+        String[] samples = {"", "7", "100", "101", "abc", "<script>x</script>", "toolong", " 42 "};
+        Random random = new Random(17);
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < 20; i++) {
+            values.put("field" + i, samples[random.nextInt(samples.length)]);
+        }
+        ValidationResult result = validator.validate(values);
+        for (int n = 0; n < 500; n++) {
+            HashMap<String, String> changed = new HashMap<String, String>();
+            changed.put("field" + random.nextInt(20), samples[random.nextInt(samples.length)]);
+            if (n % 50 == 0) {
+                changed.put("unknown", "x");
+            }
+            values.putAll(changed);
+            Assert.assertSame(result, validator.update(result, changed));
+            ValidationResult expected = validator.validate(values);
+            Assert.assertEquals(expected.isGood(), result.isGood());
+            Assert.assertEquals(expected.getErrors(), result.getErrors());
+            Assert.assertEquals(expected.getCleanValues(), result.getCleanValues());
+            Assert.assertEquals(expected.getCleanLong("field0"), result.getCleanLong("field0"));
+        }
+    }
+
+    @Test
+    public void givenPrefixViewReadBeforeAnUpdate_ItFollowsTheUpdate() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("checkbox1", "checkbox|boolean");
+        rules.put("checkbox2", "checkbox|boolean");
+        rules.put("name", "alphanumerical");
+        Validator validator = Validator.compile(rules);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("checkbox1", "true");
+        values.put("name", "Fabio");
+        ValidationResult result = validator.validate(values);
+        Map<String, String> group = result.getCleanValuesWithPrefix("checkbox");
+        Assert.assertEquals(1, group.size());
+
+        HashMap<String, String> changed = new HashMap<String, String>();
+        changed.put("checkbox2", "false");
+        changed.put("checkboxOther", "x");
+        validator.update(result, changed);
+        Assert.assertEquals(3, group.size());
+        Assert.assertEquals(3, group.entrySet().size());
+        Assert.assertEquals(3, new HashMap<String, String>(group).size());
+    }
+
+    @Test
+    public void givenAutosave_WashingMachineValidatesOnlyTheChanges() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("name", "required|alphanumerical|maxlen,20");
+        rules.put("age", "required|integer");
+        WashingMachine washingMachine = new WashingMachine();
+        washingMachine.setRules(rules);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("name", "Fabio");
+        values.put("age", "");
+        washingMachine.setValues(values);
+        Assert.assertEquals(false, washingMachine.isGood());
+
+        HashMap<String, String> changed = new HashMap<String, String>();
+        changed.put("age", "40");
+        Assert.assertEquals(true, washingMachine.isGoodWithChanges(changed));
+        Assert.assertEquals("Fabio", washingMachine.getCleanValue("name"));
+        Assert.assertEquals(40, washingMachine.getCleanLong("age"));
+
+        changed.clear();
+        changed.put("name", null);
+        Assert.assertEquals(false, washingMachine.isGoodWithChanges(changed));
+        Assert.assertEquals("The name field is required", washingMachine.getValidationErrors().get(0).getMessage());
+        // getErrors keeps the messages of the earlier calls
+        Assert.assertEquals(2, washingMachine.getErrors().size());
+        Assert.assertEquals("", values.get("name"));
+    }
+}
@@ -0,0 +1,132 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+public class VerdictCacheTest {
+
+    private static final String[] VALUES = {
+            "", " ", "true", "false", "IT", "Italy", "42", " 42 ", "101", "2/5/2017", "12:45", "abc<script>x</script>",
+            "javascript:alert(1)", "a very long value that will never be cached by the verdict cache, it is longer than the limit"
+    };
+
+    private static HashMap<String, String> rules() {
+        HashMap<String, String> rules = new HashMap<String, String>();
+        rules.put("privacy", "required|boolean");
+        rules.put("country", "required|alphanumerical|maxlen,20");
+        rules.put("quantity", "integer|maxnumeric,100");
+        rules.put("birthday", "calendardate");
+        rules.put("note", "maxlen,100");
+        return rules;
+    }
+
+    @Test
+    public void givenRepeatedValues_ResultsAreTheSameAndComeFromTheCache() {
+        Validator plain = Validator.compile(rules());
+        VerdictCache verdicts = new VerdictCache(1000, VerdictCache.DEFAULT_MAX_VALUE_LENGTH);
+        Validator cached = plain.withVerdictCache(verdicts);
+        Assert.assertSame(verdicts, cached.getVerdictCache());
+        Assert.assertSame(cached, cached.withVerdictCache(verdicts));
+
+        Random random = new Random(23);
+        for (int n = 0; n < 2000; n++) {
+            HashMap<String, String> values = new HashMap<String, String>();
+            for (String field : rules().keySet()) {
+                values.put(field, VALUES[random.nextInt(VALUES.length)]);
+            }
+            ValidationMode mode = n % 3 == 0 ? ValidationMode.FAIL_FAST : ValidationMode.COLLECT_ALL;
+            ValidationResult expected = plain.validate(values, mode);
+            ValidationResult actual = cached.validate(values, mode);
+            Assert.assertEquals(expected.isGood(), actual.isGood());
+            Assert.assertEquals(expected.getErrors(), actual.getErrors());
+            Assert.assertEquals(expected.getCleanValues(), actual.getCleanValues());
+            Assert.assertEquals(expected.getCleanLong("quantity"), actual.getCleanLong("quantity"));
+            Assert.assertEquals(expected.getCleanBoolean("privacy"), actual.getCleanBoolean("privacy"));
+            Assert.assertEquals(expected.getCleanDate("birthday"), actual.getCleanDate("birthday"));
+        }
+        // at most one outcome for each rule and short value
+        Assert.assertTrue(verdicts.size() <= rules().size() * (VALUES.length - 1));
+        Assert.assertTrue(verdicts.getHitRate() > 0.9);
+    }
+
+    @Test
+    public void givenLongValue_ItIsNotCached() {
+        VerdictCache verdicts = new VerdictCache(10, 5);
+        Validator validator = Validator.compile(rules()).withVerdictCache(verdicts);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("note", "longer than five");
+        validator.validate(values);
+        validator.validate(values);
+        Assert.assertEquals(0, verdicts.size());
+        Assert.assertEquals(0, verdicts.getHits() + verdicts.getMisses());
+
+        values.put("note", "short");
+        validator.validate(values);
+        validator.validate(values);
+        Assert.assertEquals(1, verdicts.size());
+        Assert.assertEquals(1, verdicts.getHits());
+        Assert.assertEquals(1, verdicts.getMisses());
+        Assert.assertEquals(0.5, verdicts.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void givenManyValues_CacheKeepsItsSize() {
+        VerdictCache verdicts = new VerdictCache(50, VerdictCache.DEFAULT_MAX_VALUE_LENGTH);
+        Validator validator = Validator.compile(rules()).withVerdictCache(verdicts);
+        HashMap<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < 1000; i++) {
+            values.put("quantity", String.valueOf(i));
+            Assert.assertEquals(i <= 100, validator.validate(values).isGood());
+        }
+        Assert.assertEquals(50, verdicts.size());
+        Assert.assertEquals(950, verdicts.getEvictions());
+        verdicts.clear();
+        Assert.assertEquals(0, verdicts.size());
+    }
+
+    @Test
+    public void givenSameRuleSet_ValidatorsShareTheCache() {
+        RuleSet rules = RuleSet.compile(rules());
+        VerdictCache verdicts = new VerdictCache(100, VerdictCache.DEFAULT_MAX_VALUE_LENGTH);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("country", " javascript:Italy");
+
+        WashingMachine first = new WashingMachine();
+        first.setRuleSet(rules);
+        first.setVerdictCache(verdicts);
+        first.setValues(values);
+        Assert.assertEquals(true, first.isGood());
+
+        WashingMachine second = new WashingMachine();
+        second.setVerdictCache(verdicts);
+        second.setRuleSet(rules);
+        second.setValues(values);
+        Assert.assertEquals(true, second.isGood());
+        Assert.assertEquals("Italy", second.getCleanValue("country"));
+        Assert.assertEquals(1, verdicts.getHits());
+    }
+
+    @Test
+    public void givenRulesSetForEveryRequest_CacheIsHit() {
+        VerdictCache verdicts = new VerdictCache(100, VerdictCache.DEFAULT_MAX_VALUE_LENGTH);
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("country", "Italy");
+        values.put("quantity", "42");
+        for (int request = 0; request < 2; request++) {
+            WashingMachine wm = new WashingMachine();
+            wm.setVerdictCache(verdicts);
+            wm.setValues(values);
+            // the rules are compiled again, as in the usual usage of WashingMachine
+            wm.setRules(rules());
+            Assert.assertEquals(true, wm.isGood());
+            Assert.assertEquals(42, wm.getCleanLong("quantity"));
+        }
+        Assert.assertEquals(2, verdicts.getMisses());
+        Assert.assertEquals(2, verdicts.getHits());
+        Assert.assertEquals(2, verdicts.size());
+    }
+}
@@ -480,4 +480,30 @@ public class WashingMachineTest {
         Assert.assertEquals(false, wm.isGood());
     }
 
+    @Test
+    public void givenErrors_MessagesCanBeAdded() {
+        HashMap<String, String> values = new HashMap<String, String>();
+        HashMap<String, String> rules = new HashMap<String, String>();
+        values.put("name", "12:45a");
+        rules.put("name",  WashingMachine.RULE_REQUIRED + WashingMachine.RULE_TIME);
+        WashingMachine wm = new WashingMachine();
+        wm.setValues(values);
+        wm.setRules(rules);
+        Assert.assertEquals(false, wm.isGood());
+        wm.getErrors().add("The name is already in use");
+        Assert.assertEquals(2, wm.getErrors().size());
+        Assert.assertEquals("The name is already in use", wm.getErrors().get(1));
+
+        // as always the messages of the earlier calls are kept
+        values.put("name", "12:45");
+        Assert.assertEquals(true, wm.isGood());
+        Assert.assertEquals(2, wm.getErrors().size());
+        values.put("name", "");
+        Assert.assertEquals(false, wm.isGood());
+        Assert.assertEquals(3, wm.getErrors().size());
+        Assert.assertEquals("The name field is required", wm.getErrors().get(2));
+        Assert.assertEquals(wm.getErrors().get(0) + " The name is already in use The name field is required ", wm.getAllErrors());
+        Assert.assertEquals(1, wm.getValidationErrors().size());
+    }
+
 }
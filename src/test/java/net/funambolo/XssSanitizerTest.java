@@ -0,0 +1,67 @@
+package net.funambolo;
+
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class XssSanitizerTest {
+
+    private static final String[] SAMPLES = {
+            "", "Hello", "Hello 123  \n   ?", "Hello / {} () [] @ + = \n ?", "Hello fabio how are you good boy èàòù!",
+            "1234.56", "22/05/2017", "2014-04-02", "12:45", "a description of the script",
+            "<script>alert(1)</script>hello", "<SCRIPT>alert(1)</SCRIPT>", "<script src='x.js'>", "</script>",
+            "<img src='evil.js'>", "<img SRC\r\n=\n\"evil.js\">", "src = 'not an assignment'", "eval(alert(1))",
+            "EXPRESSION(alert(1))", "javascript:alert(1)", "JavaScript:void(0)", "vbscript:msgbox", "<body onload=alert(1)>",
+            "onloadonloadonload", "java<script>x</script>script:alert(1)", "<scr<script>ipt>alert(1)", "ev<script>al(1)"
+    };
+
+    @Test
+    public void givenSamples_OutputIsTheSameOfTheOriginalStripXSS() {
+        for (String sample : SAMPLES) {
+            Assert.assertEquals(sample, legacyStripXSS(sample), XssSanitizer.strip(sample));
+        }
+    }
+
+    @Test
+    public void givenRandomValues_OutputIsTheSameOfTheOriginalStripXSS() {
+        String[] pieces = {"<script>", "</script>", "<script", ">", "src", "=", "'", "\"", "\r", "\n", "eval(", ")",
+                "expression(", "javascript:", "vbscript:", "onload", "OnLoad", "SCRIPT", "a", " ", "é"};
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = random.nextInt(12);
+            for (int k = 0; k < n; k++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String sample = sb.toString();
+            Assert.assertEquals(sample, legacyStripXSS(sample), XssSanitizer.strip(sample));
+        }
+    }
+
+    @Test
+    public void givenCleanValue_SameInstanceIsReturned() {
+        String value = "Hello fabio, the description of the evaluation is on the javascript page";
+        Assert.assertSame(value, XssSanitizer.strip(value));
+        Assert.assertNull(XssSanitizer.strip(null));
+    }
+
+    /**
+     * The original WashingMachine.stripXSS, kept as reference
+     */
+    private static String legacyStripXSS(String value) {
+        value = Pattern.compile("<script>(.*?)</script>", Pattern.CASE_INSENSITIVE).matcher(value).replaceAll("");
+        value = Pattern.compile("src[\r\n]*=[\r\n]*\\\'(.*?)\\\'", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL).matcher(value).replaceAll("");
+        value = Pattern.compile("src[\r\n]*=[\r\n]*\\\"(.*?)\\\"", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL).matcher(value).replaceAll("");
+        value = Pattern.compile("</script>", Pattern.CASE_INSENSITIVE).matcher(value).replaceAll("");
+        value = Pattern.compile("<script(.*?)>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL).matcher(value).replaceAll("");
+        value = Pattern.compile("eval\\((.*?)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL).matcher(value).replaceAll("");
+        value = Pattern.compile("expression\\((.*?)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL).matcher(value).replaceAll("");
+        value = Pattern.compile("javascript:", Pattern.CASE_INSENSITIVE).matcher(value).replaceAll("");
+        value = Pattern.compile("vbscript:", Pattern.CASE_INSENSITIVE).matcher(value).replaceAll("");
+        value = Pattern.compile("onload(.*?)=", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL).matcher(value).replaceAll("");
+        return value;
+    }
+}